@@ -23,7 +23,6 @@ import java.util.Objects;
  */
 public final class ExponentiationUtils {
 
-	private static final int PRIME_CERTAINTY = 1000;
 	private static final BigInteger MAX_POW_INT = BigInteger.valueOf(999999999);
 
 	private ExponentiationUtils() {
@@ -131,7 +130,7 @@ public final class ExponentiationUtils {
 			return BigDecimal.ONE;
 		else if (degree.equals(BigInteger.TWO))
 			return radicand.sqrt(mc);
-		else if (degree.isProbablePrime(PRIME_CERTAINTY))
+		else if (PrimalityUtils.isPrime(degree))
 			return root0(radicand, degree, mc);
 
 		for (BigInteger b : IntegerUtils.factor(degree))
@@ -238,6 +237,156 @@ public final class ExponentiationUtils {
 		return result;
 	}
 
+	/**
+	 * Returns { r, n - r<sup>k</sup> }, where r is the k<sup>th</sup> root of n
+	 * rounded towards zero.
+	 * <p>
+	 * Newton's method is started from an estimate of the root found from the bit
+	 * length and leading bits of n, and descends onto the root in a number of
+	 * steps which grows only with the logarithm of its size.
+	 * 
+	 * @param n
+	 * @param k the degree of the root, which must be positive
+	 * @return the integer k<sup>th</sup> root of n and its remainder
+	 * @throws ArithmeticException if k is not positive, or if n is negative and k
+	 *                             is even
+	 */
+	public static final BigInteger[] iroot(final BigInteger n, final int k) {
+
+		if (k < 1)
+			throw new ArithmeticException("Nonpositive root degree: " + k);
+		else if (n.signum() < 0) {
+
+			if ((k & 1) == 0)
+				throw new ArithmeticException("Even root of a negative number");
+
+			final BigInteger[] root = iroot(n.negate(), k);
+			return new BigInteger[] { root[0].negate(), root[1].negate() };
+		} else if (k == 1 || n.compareTo(BigInteger.TWO) < 0)
+			return new BigInteger[] { n, BigInteger.ZERO };
+		else if (k == 2)
+			return n.sqrtAndRemainder();
+		else if (k >= n.bitLength())
+			// n is below 2^k, so its root is below 2.
+			return new BigInteger[] { ONE, n.subtract(ONE) };
+
+		final BigInteger bigK = BigInteger.valueOf(k);
+		final BigInteger kMinusOne = BigInteger.valueOf(k - 1);
+
+		// Any positive estimate lands at or above the root after one step, from where
+		// the steps descend monotonically.
+		BigInteger x = newton(n, k, bigK, kMinusOne, estimateRoot(n, k));
+
+		while (true) {
+
+			final BigInteger y = newton(n, k, bigK, kMinusOne, x);
+
+			if (y.compareTo(x) >= 0)
+				return new BigInteger[] { x, n.subtract(x.pow(k)) };
+
+			x = y;
+		}
+	}
+
+	private static BigInteger newton(final BigInteger n, final int k, final BigInteger bigK, final BigInteger kMinusOne,
+			final BigInteger x) {
+		return kMinusOne.multiply(x).add(n.divide(x.pow(k - 1))).divide(bigK);
+	}
+
+	/**
+	 * Returns roughly the k<sup>th</sup> root of n, which is positive, accurate to
+	 * about 30 bits, from the base 2 logarithm of its leading 63 bits.
+	 */
+	private static BigInteger estimateRoot(final BigInteger n, final int k) {
+
+		final int shift = Math.max(0, n.bitLength() - 63);
+		final double log = (shift + Math.log(n.shiftRight(shift).doubleValue()) / Math.log(2)) / k;
+
+		if (log < 62)
+			return BigInteger.valueOf(Math.max(1, (long) Math.pow(2, log)));
+
+		final int exponent = (int) log - 52;
+		return BigInteger.valueOf((long) Math.pow(2, log - exponent)).shiftLeft(exponent);
+	}
+
+	/**
+	 * Returns { r, k } such that n = r<sup>k</sup> with k as large as possible,
+	 * which is { n, 1 } if n is not a perfect power. If n is negative, k is the
+	 * largest odd such exponent, and r is negative.
+	 * <p>
+	 * Only prime exponents below the bit length of n are tried, each only once
+	 * n passes the test that it is a k<sup>th</sup> power residue modulo a few
+	 * primes p &equiv; 1 (mod k), which rejects all but 1 in k<sup>3</sup> other
+	 * numbers before any root is taken. A root which is exact is then itself
+	 * tested again, so the exponents found multiply together.
+	 * 
+	 * @param n
+	 * @return the smallest root of n and its degree
+	 */
+	public static final BigInteger[] perfectPower(final BigInteger n) {
+
+		if (n.abs().compareTo(BigInteger.TWO) < 0)
+			return new BigInteger[] { n, ONE };
+
+		BigInteger root = n.abs();
+		int degree = 1;
+
+		final long[] exponents = PrimeFinder.DEFAULT_FINDER.primesInRange(n.signum() < 0 ? 3 : 2, root.bitLength())
+				.toArray();
+
+		for (final long prime : exponents) {
+
+			final int k = (int) prime;
+
+			if (k >= root.bitLength())
+				break;
+
+			// An even number is a perfect kth power only if k divides its power of 2.
+			final int twos = root.getLowestSetBit();
+
+			if (twos > 0 && twos % k != 0)
+				continue;
+
+			while (isPowerResidue(root, k)) {
+
+				final BigInteger[] r = iroot(root, k);
+
+				if (r[1].signum() != 0)
+					break;
+
+				root = r[0];
+				degree *= k;
+			}
+		}
+
+		return new BigInteger[] { n.signum() < 0 ? root.negate() : root, BigInteger.valueOf(degree) };
+	}
+
+	/**
+	 * Returns whether n, which is positive, is a k<sup>th</sup> power residue
+	 * modulo each of the first three primes p &equiv; 1 (mod k), as every perfect
+	 * k<sup>th</sup> power is.
+	 */
+	private static boolean isPowerResidue(final BigInteger n, final int k) {
+
+		int tested = 0;
+
+		for (long p = 2L * k + 1; tested < 3 && p < Integer.MAX_VALUE; p += 2L * k)
+			if (PrimalityUtils.isPrime(p)) {
+
+				final BigInteger bigP = BigInteger.valueOf(p);
+				final BigInteger residue = n.mod(bigP);
+
+				// The kth power residues are the units whose order divides (p - 1) / k.
+				if (residue.signum() != 0 && !residue.modPow(BigInteger.valueOf((p - 1) / k), bigP).equals(ONE))
+					return false;
+
+				tested++;
+			}
+
+		return true;
+	}
+
 	public static final boolean isPowerOf(final BigInteger number, final BigInteger base) {
 		return isPowerOf(new BigDecimal(number), new BigDecimal(base), MathContext.UNLIMITED);
 	}
@@ -0,0 +1,350 @@
+package soluturus.calculations;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Object that represents the prime factorization of a nonzero integer.
+ * <p>
+ * Stores the distinct prime factors in ascending order alongside the exponent
+ * of each, so that operations which depend on the multiplicity of each prime,
+ * such as {@link #gcd(Factorization) gcd} or {@link #divisors() divisors}, need
+ * not regroup a list of repeated primes.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class Factorization {
+
+	public static final Factorization ONE = new Factorization(1, new BigInteger[0], new int[0]);
+
+	private final int signum;
+	private final BigInteger[] primes;
+	private final int[] exponents;
+
+	/**
+	 * Creates a factorization from its sign and its distinct primes in ascending
+	 * order, which are not copied.
+	 */
+	Factorization(final int signum, final BigInteger[] primes, final int[] exponents) {
+		this.signum = signum;
+		this.primes = primes;
+		this.exponents = exponents;
+	}
+
+	/**
+	 * Creates the factorization with the given sign from its prime factors in
+	 * ascending order, each repeated once for each time that it divides.
+	 */
+	static Factorization of(final int signum, final List<BigInteger> factors) {
+
+		final BigInteger[] primes = new BigInteger[factors.size()];
+		final int[] exponents = new int[factors.size()];
+		int size = 0;
+
+		// The factors are sorted, so each run of equal factors is one prime power.
+		for (BigInteger p : factors)
+			if (size != 0 && primes[size - 1].equals(p))
+				exponents[size - 1]++;
+			else {
+				primes[size] = p;
+				exponents[size++] = 1;
+			}
+
+		return new Factorization(signum, Arrays.copyOf(primes, size), Arrays.copyOf(exponents, size));
+	}
+
+	// Getters
+
+	/**
+	 * Returns the sign of the factored integer, which is either -1 or 1.
+	 *
+	 * @return the sign of the factored integer
+	 */
+	public final int signum() {
+		return signum;
+	}
+
+	/**
+	 * Returns the amount of distinct primes which divide the factored integer.
+	 *
+	 * @return the amount of distinct prime factors
+	 */
+	public final int size() {
+		return primes.length;
+	}
+
+	public final BigInteger getPrime(final int index) {
+		return primes[index];
+	}
+
+	public final int getExponent(final int index) {
+		return exponents[index];
+	}
+
+	public final BigInteger[] getPrimes() {
+		return primes.clone();
+	}
+
+	public final int[] getExponents() {
+		return exponents.clone();
+	}
+
+	public final PrimePower getPrimePower(final int index) {
+		return new PrimePower(primes[index], exponents[index]);
+	}
+
+	/**
+	 * Returns the integer that this is the factorization of.
+	 *
+	 * @return the factored integer
+	 */
+	public BigInteger value() {
+
+		BigInteger value = BigInteger.valueOf(signum);
+
+		for (int i = 0; i < primes.length; i++)
+			value = value.multiply(primes[i].pow(exponents[i]));
+
+		return value;
+	}
+
+	/**
+	 * Returns the factorization of the product of the integers that this and
+	 * multiplicand factor.
+	 *
+	 * @param multiplicand
+	 * @return the factorization of the product
+	 */
+	public Factorization multiply(final Factorization multiplicand) {
+
+		final BigInteger[] p = new BigInteger[primes.length + multiplicand.primes.length];
+		final int[] e = new int[p.length];
+		int size = 0;
+
+		for (int i = 0, j = 0; i < primes.length || j < multiplicand.primes.length; size++) {
+
+			final int comparison = i == primes.length ? 1
+					: j == multiplicand.primes.length ? -1 : primes[i].compareTo(multiplicand.primes[j]);
+
+			if (comparison < 0) {
+				p[size] = primes[i];
+				e[size] = exponents[i++];
+			} else if (comparison > 0) {
+				p[size] = multiplicand.primes[j];
+				e[size] = multiplicand.exponents[j++];
+			} else {
+				p[size] = primes[i];
+				e[size] = Math.addExact(exponents[i++], multiplicand.exponents[j++]);
+			}
+		}
+
+		return new Factorization(signum * multiplicand.signum, Arrays.copyOf(p, size), Arrays.copyOf(e, size));
+	}
+
+	/**
+	 * Returns the factorization of the Greatest Common Divisor of the integers
+	 * that this and o factor, which is always positive.
+	 *
+	 * @param o
+	 * @return the factorization of the gcd
+	 */
+	public Factorization gcd(final Factorization o) {
+
+		final BigInteger[] p = new BigInteger[Math.min(primes.length, o.primes.length)];
+		final int[] e = new int[p.length];
+		int size = 0;
+
+		for (int i = 0, j = 0; i < primes.length && j < o.primes.length;) {
+
+			final int comparison = primes[i].compareTo(o.primes[j]);
+
+			if (comparison < 0)
+				i++;
+			else if (comparison > 0)
+				j++;
+			else {
+				p[size] = primes[i];
+				e[size++] = Math.min(exponents[i++], o.exponents[j++]);
+			}
+		}
+
+		return new Factorization(1, Arrays.copyOf(p, size), Arrays.copyOf(e, size));
+	}
+
+	/**
+	 * Returns the factorization of the radical of the factored integer, which is
+	 * the product of its distinct prime factors.
+	 *
+	 * @return the factorization of the radical
+	 */
+	public Factorization radical() {
+
+		final int[] e = new int[primes.length];
+		Arrays.fill(e, 1);
+
+		return new Factorization(1, primes, e);
+	}
+
+	/**
+	 * Returns Euler's totient of the absolute value of the factored integer, which
+	 * is the amount of integers from 1 to it which are coprime to it.
+	 *
+	 * @return φ(|n|)
+	 */
+	public BigInteger totient() {
+
+		BigInteger totient = BigInteger.ONE;
+
+		for (int i = 0; i < primes.length; i++)
+			totient = totient.multiply(primes[i].pow(exponents[i] - 1)).multiply(primes[i].subtract(BigInteger.ONE));
+
+		return totient;
+	}
+
+	/**
+	 * Returns the Möbius function of the factored integer, which is 0 if it is not
+	 * squarefree and otherwise (-1)<sup>k</sup> for its k distinct prime factors.
+	 *
+	 * @return μ(|n|)
+	 */
+	public int mobius() {
+
+		for (int exponent : exponents)
+			if (exponent > 1)
+				return 0;
+
+		return (primes.length & 1) == 0 ? 1 : -1;
+	}
+
+	/**
+	 * Returns the sum of the positive divisors of the factored integer.
+	 *
+	 * @return σ(|n|)
+	 */
+	public BigInteger divisorSum() {
+
+		BigInteger sum = BigInteger.ONE;
+
+		for (int i = 0; i < primes.length; i++) {
+			final BigInteger p = primes[i];
+			sum = sum.multiply(p.pow(exponents[i] + 1).subtract(BigInteger.ONE).divide(p.subtract(BigInteger.ONE)));
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Returns the amount of positive divisors of the factored integer, which is the
+	 * length of {@link #divisors()} without computing them.
+	 *
+	 * @return the divisor count of |n|
+	 */
+	public BigInteger divisorCount() {
+
+		BigInteger count = BigInteger.ONE;
+
+		for (int exponent : exponents)
+			count = count.multiply(BigInteger.valueOf(exponent + 1L));
+
+		return count;
+	}
+
+	/**
+	 * Returns every positive divisor of the factored integer in ascending order.
+	 *
+	 * @return the divisors of the factored integer
+	 * @throws ArithmeticException if there are too many divisors to fit in an
+	 *                             array
+	 */
+	public BigInteger[] divisors() {
+
+		long count = 1;
+		for (int exponent : exponents)
+			count = Math.multiplyExact(count, exponent + 1);
+
+		final BigInteger[] divisors = new BigInteger[Math.toIntExact(count)];
+		divisors[0] = BigInteger.ONE;
+		int size = 1;
+
+		// Each prime multiplies every divisor found so far by each of its powers.
+		for (int i = 0; i < primes.length; i++) {
+
+			final int previous = size;
+			BigInteger power = BigInteger.ONE;
+
+			for (int k = 0; k < exponents[i]; k++) {
+
+				power = power.multiply(primes[i]);
+
+				for (int d = 0; d < previous; d++)
+					divisors[size++] = divisors[d].multiply(power);
+			}
+		}
+
+		Arrays.sort(divisors);
+		return divisors;
+	}
+
+	/**
+	 * Returns every prime factor of the factored integer in ascending order, each
+	 * repeated once for each time that it divides the integer, followed by -1 if
+	 * the integer is negative.
+	 *
+	 * @return the prime factors with repeats
+	 */
+	public BigInteger[] toArray() {
+
+		int count = signum < 0 ? 1 : 0;
+		for (int exponent : exponents)
+			count = Math.addExact(count, exponent);
+
+		final BigInteger[] factors = new BigInteger[count];
+		int size = 0;
+
+		for (int i = 0; i < primes.length; i++)
+			for (int k = 0; k < exponents[i]; k++)
+				factors[size++] = primes[i];
+
+		if (signum < 0)
+			factors[size] = BigInteger.valueOf(-1);
+
+		return factors;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+
+		if (!(o instanceof Factorization))
+			return false;
+
+		final Factorization f = (Factorization) o;
+
+		return signum == f.signum && Arrays.equals(primes, f.primes) && Arrays.equals(exponents, f.exponents);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * signum + Arrays.hashCode(primes)) + Arrays.hashCode(exponents);
+	}
+
+	@Override
+	public String toString() {
+
+		final StringBuilder sb = new StringBuilder(signum < 0 ? "-1" : primes.length == 0 ? "1" : "");
+
+		for (int i = 0; i < primes.length; i++) {
+
+			if (sb.length() != 0)
+				sb.append(" * ");
+
+			sb.append(primes[i]);
+
+			if (exponents[i] != 1)
+				sb.append('^').append(exponents[i]);
+		}
+
+		return sb.toString();
+	}
+}
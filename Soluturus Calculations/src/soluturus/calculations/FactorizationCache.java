@@ -0,0 +1,215 @@
+package soluturus.calculations;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of prime factorizations which may be shared by any amount
+ * of threads.
+ * <p>
+ * Entries are split between independently locked segments by hash. Each
+ * segment evicts its least recently used entry once full, but only admits a
+ * new entry in its place if the new one has been requested more often
+ * recently, as estimated by a small count-min sketch that is halved
+ * periodically. A single request for each of many distinct numbers therefore
+ * does not flush out the numbers which keep being factored.
+ * <p>
+ * Factorizations are computed outside of any lock, so concurrent requests for
+ * the same missing number may each compute it.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class FactorizationCache {
+
+	public static final FactorizationCache DEFAULT_CACHE = new FactorizationCache(1 << 12);
+
+	private static final int SEGMENTS = 16;
+
+	private static final class Segment {
+
+		private final LinkedHashMap<BigInteger, Factorization> entries;
+		private final int capacity;
+
+		/**
+		 * Four rows of 8 bit counters, each indexed by a different hash of the key.
+		 */
+		private final byte[] sketch;
+		private final int mask;
+		private int increments;
+
+		Segment(final int capacity) {
+
+			this.capacity = capacity;
+			entries = new LinkedHashMap<>(16, 0.75f, true);
+
+			final int width = Integer.highestOneBit(Math.max(16, capacity * 4 - 1)) << 1;
+			sketch = new byte[4 * width];
+			mask = width - 1;
+		}
+
+		Factorization get(final BigInteger key) {
+			record(key.hashCode());
+			return entries.get(key);
+		}
+
+		/**
+		 * Inserts the entry if there is room for it, or if it is requested more
+		 * frequently than the least recently used entry, which it then replaces.
+		 * Returns whether an entry was evicted.
+		 */
+		boolean admit(final BigInteger key, final Factorization value) {
+
+			if (entries.containsKey(key) || entries.size() < capacity) {
+				entries.put(key, value);
+				return false;
+			}
+
+			final Iterator<BigInteger> eldest = entries.keySet().iterator();
+			final BigInteger victim = eldest.next();
+
+			if (frequency(key.hashCode()) <= frequency(victim.hashCode()))
+				return false;
+
+			eldest.remove();
+			entries.put(key, value);
+			return true;
+		}
+
+		private void record(final int hash) {
+
+			for (int row = 0; row < 4; row++) {
+				final int index = row * (mask + 1) + (rehash(hash, row) & mask);
+				if (sketch[index] != Byte.MAX_VALUE)
+					sketch[index]++;
+			}
+
+			// Halving every counter periodically lets old popularity fade.
+			if (++increments == 10 * (mask + 1)) {
+				for (int i = 0; i < sketch.length; i++)
+					sketch[i] >>= 1;
+				increments = 0;
+			}
+		}
+
+		private int frequency(final int hash) {
+
+			int frequency = Byte.MAX_VALUE;
+
+			for (int row = 0; row < 4; row++)
+				frequency = Math.min(frequency, sketch[row * (mask + 1) + (rehash(hash, row) & mask)]);
+
+			return frequency;
+		}
+
+		private static int rehash(final int hash, final int row) {
+			final int h = (hash + row) * (0x9E3779B9 + 2 * row);
+			return h ^ h >>> 16;
+		}
+	}
+
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a cache which holds approximately capacity factorizations.
+	 *
+	 * @param capacity the maximum amount of factorizations held, which is rounded
+	 *                 up to a multiple of the amount of segments
+	 * @throws IllegalArgumentException if capacity is not positive
+	 */
+	public FactorizationCache(final int capacity) {
+
+		if (capacity < 1)
+			throw new IllegalArgumentException("Illegal cache capacity: " + capacity);
+
+		segments = new Segment[SEGMENTS];
+
+		for (int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+	}
+
+	/**
+	 * Returns the cached factorization of key, or computes it with factorizer and
+	 * offers it to the cache if it is not present.
+	 *
+	 * @param key        the number to factor
+	 * @param factorizer the function which factors key if it is not cached
+	 * @return the factorization of key
+	 */
+	public Factorization computeIfAbsent(final BigInteger key,
+			final Function<? super BigInteger, ? extends Factorization> factorizer) {
+
+		final int hash = key.hashCode();
+		final Segment segment = segments[(hash ^ hash >>> 16) & SEGMENTS - 1];
+
+		Factorization value;
+
+		synchronized (segment) {
+			value = segment.get(key);
+		}
+
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+
+		misses.increment();
+		value = factorizer.apply(key);
+
+		synchronized (segment) {
+			if (segment.admit(key, value))
+				evictions.increment();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the amount of factorizations currently held.
+	 *
+	 * @return the size of the cache
+	 */
+	public int size() {
+
+		int size = 0;
+
+		for (Segment segment : segments)
+			synchronized (segment) {
+				size += segment.entries.size();
+			}
+
+		return size;
+	}
+
+	public void clear() {
+		for (Segment segment : segments)
+			synchronized (segment) {
+				segment.entries.clear();
+			}
+	}
+
+	public long hitCount() {
+		return hits.sum();
+	}
+
+	public long missCount() {
+		return misses.sum();
+	}
+
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "FactorizationCache[size=" + size() + ", hits=" + hitCount() + ", misses=" + missCount()
+				+ ", evictions=" + evictionCount() + "]";
+	}
+}
@@ -0,0 +1,538 @@
+package soluturus.calculations;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.TWO;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import soluturus.calculations.PrimalityUtils.Montgomery;
+
+/**
+ * Splits positive integers into their prime factors in stages.
+ * <p>
+ * Cofactors within the {@link SmallestPrimeFactorTable#getDefault() default
+ * smallest prime factor table} are factored by looking up each prime factor.
+ * Otherwise, every prime below {@value #TRIAL_LIMIT} is first divided out by
+ * trial division against a fixed table. Each remaining cofactor is then either
+ * shown to be prime by {@link PrimalityUtils#isPrime(BigInteger) isPrime}, or
+ * split with Brent's variant of Pollard's rho algorithm, which accumulates
+ * {@value #BATCH} differences into a single product before taking a gcd.
+ * <p>
+ * Cofactors which fit in a long are split by rho on longs, which always
+ * succeeds quickly at that size. Rho takes time proportional to the square
+ * root of the factor it finds, so larger cofactors are only given a bounded
+ * amount of rho iterations to find any small factors, and are otherwise split
+ * by the {@link QuadraticSieve quadratic sieve}, whose time depends only on
+ * the size of the cofactor. The bound grows with that time, so rho is given
+ * longer before sieving a larger cofactor.
+ * <p>
+ * The stages can also be run lazily, so that callers who only need the
+ * smallest primes never split the cofactor, or under a budget of rho
+ * iterations, in which case cofactors that are not split within it are
+ * returned whole rather than sieved.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class Factorizer {
+
+	static final int TRIAL_LIMIT = 1 << 12;
+	private static final BigInteger TRIAL_LIMIT_SQUARED = BigInteger.valueOf((long) TRIAL_LIMIT * TRIAL_LIMIT);
+
+	private static final long[] SMALL_PRIMES = PrimeSieve.segment(0, TRIAL_LIMIT, new long[0], 0);
+
+	/**
+	 * Products of runs of consecutive {@link #SMALL_PRIMES} which fit within a
+	 * long, so that one BigInteger remainder tests several primes at once. Run i
+	 * ends before SMALL_PRIMES[RUN_ENDS[i]].
+	 */
+	private static final long[] RUN_PRODUCTS;
+	private static final int[] RUN_ENDS;
+
+	static {
+		final ArrayList<Long> products = new ArrayList<>();
+		final ArrayList<Integer> ends = new ArrayList<>();
+
+		long product = 1;
+
+		for (int i = 0; i < SMALL_PRIMES.length; i++) {
+			if (product > Long.MAX_VALUE / SMALL_PRIMES[i]) {
+				products.add(product);
+				ends.add(i);
+				product = 1;
+			}
+			product *= SMALL_PRIMES[i];
+		}
+
+		products.add(product);
+		ends.add(SMALL_PRIMES.length);
+
+		RUN_PRODUCTS = products.stream().mapToLong(Long::longValue).toArray();
+		RUN_ENDS = ends.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static final int BATCH = 128;
+
+	/**
+	 * The least rho iterations given to a cofactor before it is sieved.
+	 */
+	private static final long SIEVE_RHO_LIMIT = 1 << 14;
+
+	private Factorizer() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the prime factors of n, which must be positive, in ascending order
+	 * with each prime repeated once for each time that it divides n.
+	 *
+	 * @param n
+	 * @return the prime factors of n
+	 */
+	static ArrayList<BigInteger> factor(final BigInteger n) {
+
+		final ArrayList<BigInteger> factors = new ArrayList<>();
+		final BigInteger cofactor = trialDivide(n, factors);
+
+		if (!cofactor.equals(ONE))
+			split(cofactor, factors, Long.MAX_VALUE);
+
+		Collections.sort(factors);
+		return factors;
+	}
+
+	/**
+	 * Divides every prime below {@value #TRIAL_LIMIT} out of n, adding them to
+	 * factors, and returns what remains.
+	 */
+	private static BigInteger trialDivide(BigInteger n, final List<BigInteger> factors) {
+
+		if (n.bitLength() < Long.SIZE)
+			return BigInteger.valueOf(trialDivide(n.longValue(), factors));
+
+		int start = 0;
+
+		for (int run = 0; run < RUN_PRODUCTS.length; run++) {
+
+			final long residue = n.mod(BigInteger.valueOf(RUN_PRODUCTS[run])).longValue();
+
+			for (int i = start; i < RUN_ENDS[run]; i++)
+				if (residue % SMALL_PRIMES[i] == 0) {
+
+					final BigInteger p = BigInteger.valueOf(SMALL_PRIMES[i]);
+					BigInteger[] qr;
+
+					while ((qr = n.divideAndRemainder(p))[1].signum() == 0) {
+						n = qr[0];
+						factors.add(p);
+					}
+				}
+
+			start = RUN_ENDS[run];
+
+			if (n.bitLength() < Long.SIZE) {
+
+				// Every prime before this run has already been divided out.
+				final long cofactor = n.longValue();
+				return BigInteger.valueOf(trialDivide(cofactor, factors, start));
+			}
+		}
+
+		return n;
+	}
+
+	private static long trialDivide(final long n, final List<BigInteger> factors) {
+		return trialDivide(n, factors, 0);
+	}
+
+	private static long trialDivide(long n, final List<BigInteger> factors, final int start) {
+
+		final SmallestPrimeFactorTable table = SmallestPrimeFactorTable.getDefault();
+
+		if (table != null && table.contains(n)) {
+			table.factor(n, factors);
+			return 1;
+		}
+
+		for (int i = start; i < SMALL_PRIMES.length; i++) {
+
+			final long p = SMALL_PRIMES[i];
+
+			if (p * p > n)
+				break;
+
+			while (n % p == 0) {
+				n /= p;
+				factors.add(BigInteger.valueOf(p));
+			}
+		}
+
+		// Any cofactor below the square of the next prime is prime itself.
+		if (n > 1 && n < (long) TRIAL_LIMIT * TRIAL_LIMIT) {
+			factors.add(BigInteger.valueOf(n));
+			return 1;
+		}
+
+		return n;
+	}
+
+	/**
+	 * Adds the prime factors of n, which must be positive, to factors in ascending
+	 * order, using at most roughly limit rho iterations on each cofactor of 63
+	 * bits or more and never sieving. Smaller cofactors are always split. Returns
+	 * the product of the cofactors which could not be split, which is 1 if n was
+	 * factored completely.
+	 *
+	 * @param n
+	 * @param limit   the rho iterations allowed for each cofactor of 63 bits or
+	 *                more
+	 * @param factors the list to add the prime factors to
+	 * @return the unfactored part of n
+	 */
+	static BigInteger factor(final BigInteger n, final long limit, final List<BigInteger> factors) {
+
+		final BigInteger cofactor = trialDivide(n, factors);
+		final BigInteger rest = cofactor.equals(ONE) ? ONE : split(cofactor, factors, limit);
+
+		Collections.sort(factors);
+		return rest;
+	}
+
+	/**
+	 * Returns an iterator over the prime powers which divide n, which must be
+	 * positive, in ascending order of their primes. Primes below
+	 * {@value #TRIAL_LIMIT} are found by trial division as they are requested, and
+	 * the cofactor which remains is only split once the iterator reaches it.
+	 *
+	 * @param n
+	 * @return the prime powers of n
+	 */
+	static Iterator<PrimePower> iterator(final BigInteger n) {
+		return new PrimePowerIterator(n);
+	}
+
+	private static final class PrimePowerIterator implements Iterator<PrimePower> {
+
+		/**
+		 * What remains of n after dividing out every prime yielded so far.
+		 */
+		private BigInteger n;
+		private int index;
+
+		/**
+		 * The residue of n mod the product of the current run, or -1 if it must be
+		 * recomputed.
+		 */
+		private int run;
+		private long residue = -1;
+
+		private Factorization rest;
+		private int restIndex;
+		private PrimePower next;
+
+		PrimePowerIterator(final BigInteger n) {
+			this.n = n;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (next == null)
+				next = advance();
+
+			return next != null;
+		}
+
+		@Override
+		public PrimePower next() {
+
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			final PrimePower p = next;
+			next = null;
+			return p;
+		}
+
+		private PrimePower advance() {
+
+			if (rest == null)
+				for (; index < SMALL_PRIMES.length; index++) {
+
+					final long p = SMALL_PRIMES[index];
+					final boolean divides;
+
+					if (n.bitLength() < Long.SIZE) {
+
+						// Any cofactor below the square of the next prime is prime itself.
+						if (p * p > n.longValue())
+							break;
+
+						divides = n.longValue() % p == 0;
+					} else {
+
+						while (index >= RUN_ENDS[run]) {
+							run++;
+							residue = -1;
+						}
+
+						if (residue < 0)
+							residue = n.mod(BigInteger.valueOf(RUN_PRODUCTS[run])).longValue();
+
+						divides = residue % p == 0;
+					}
+
+					if (divides) {
+
+						final BigInteger prime = BigInteger.valueOf(p);
+						int exponent = 0;
+						BigInteger[] qr;
+
+						while ((qr = n.divideAndRemainder(prime))[1].signum() == 0) {
+							n = qr[0];
+							exponent++;
+						}
+
+						index++;
+						residue = -1;
+						return new PrimePower(prime, exponent);
+					}
+				}
+
+			if (rest == null) {
+
+				final ArrayList<BigInteger> factors = new ArrayList<>();
+
+				if (!n.equals(ONE))
+					split(n, factors, Long.MAX_VALUE);
+
+				Collections.sort(factors);
+				rest = Factorization.of(1, factors);
+			}
+
+			return restIndex < rest.size() ? rest.getPrimePower(restIndex++) : null;
+		}
+	}
+
+	/**
+	 * Adds the prime factors of n, which has no prime factors below
+	 * {@value #TRIAL_LIMIT}, to factors. Unless limit is {@link Long#MAX_VALUE},
+	 * each cofactor of 63 bits or more is given roughly limit rho iterations and
+	 * never sieved, while smaller ones are always split by rho on longs. Returns
+	 * the product of the cofactors which could not be split.
+	 */
+	private static BigInteger split(final BigInteger n, final List<BigInteger> factors, final long limit) {
+
+		if (n.compareTo(TRIAL_LIMIT_SQUARED) < 0 || PrimalityUtils.isPrime(n)) {
+			factors.add(n);
+			return ONE;
+		}
+
+		final BigInteger d;
+
+		if (n.bitLength() < Long.SIZE)
+			d = BigInteger.valueOf(rho(n.longValue()));
+		else {
+
+			final BigInteger root = perfectRoot(n);
+
+			if (root != null)
+				d = root;
+			else if (limit != Long.MAX_VALUE)
+				d = rho(n, limit);
+			else {
+				final BigInteger g = rho(n, sieveRhoLimit(n));
+				d = g != null ? g : QuadraticSieve.factor(n);
+			}
+		}
+
+		if (d == null)
+			return n;
+
+		// Each piece is tested for primality and perfect powers again, and given its
+		// own rho iterations, before it can be sieved.
+		return split(d, factors, limit).multiply(split(n.divide(d), factors, limit));
+	}
+
+	/**
+	 * Returns the rho iterations given to n before it is sieved, which grow with
+	 * the square of the sieve's factor base as the time it takes does. This
+	 * reaches roughly 2<sup>20</sup> at 60 digits, enough to find factors of about
+	 * 40 bits in a small fraction of the time the sieve would take.
+	 */
+	private static long sieveRhoLimit(final BigInteger n) {
+		final long size = QuadraticSieve.factorBaseSize(n.bitLength());
+		return Math.max(SIEVE_RHO_LIMIT, size * size / 16);
+	}
+
+	/**
+	 * Returns the smallest root r of n such that n = r<sup>k</sup> for some k
+	 * &gt; 1, or null if n is not a perfect power. Since n has no prime factors
+	 * below {@value #TRIAL_LIMIT}, k is at most log<sub>{@value #TRIAL_LIMIT}</sub>
+	 * n.
+	 */
+	private static BigInteger perfectRoot(final BigInteger n) {
+
+		final int maximum = n.bitLength() / 12;
+
+		for (long k : SMALL_PRIMES) {
+
+			if (k > maximum)
+				break;
+
+			final BigInteger[] r = ExponentiationUtils.iroot(n, (int) k);
+
+			if (r[1].signum() == 0) {
+
+				// The root may itself be a perfect power.
+				final BigInteger s = perfectRoot(r[0]);
+				return s != null ? s : r[0];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns a nontrivial factor of n, which must be odd and composite.
+	 */
+	static long rho(final long n) {
+
+		final Montgomery m = new Montgomery(n);
+
+		for (long c = 1;; c++) {
+
+			final long g = rho(m, m.toMontgomery(c));
+
+			if (g != n)
+				return g;
+		}
+	}
+
+	/**
+	 * Runs Brent's cycle search on y = y<sup>2</sup> + c mod n, returning a
+	 * factor of n which is n itself if the search failed.
+	 */
+	private static long rho(final Montgomery m, final long c) {
+
+		final long n = m.n;
+
+		long y = m.toMontgomery(2);
+		long x = y;
+		long ys = y;
+		long q = m.one();
+		long g = 1;
+
+		for (long r = 1; g == 1; r <<= 1) {
+
+			x = y;
+
+			for (long i = 0; i < r; i++)
+				y = m.add(m.multiply(y, y), c);
+
+			for (long k = 0; k < r && g == 1; k += BATCH) {
+
+				ys = y;
+
+				for (long i = Math.min(BATCH, r - k); i > 0; i--) {
+					y = m.add(m.multiply(y, y), c);
+					q = m.multiply(q, m.subtract(x, y));
+				}
+
+				// q is in Montgomery form, which differs from q by a unit mod n.
+				g = PrimitiveMath.gcd(q, n);
+			}
+		}
+
+		// The batch overshot every factor at once, so steps through it again.
+		if (g == n)
+			do {
+				ys = m.add(m.multiply(ys, ys), c);
+				g = PrimitiveMath.gcd(m.subtract(x, ys), n);
+			} while (g == 1);
+
+		return g;
+	}
+
+	/**
+	 * Returns a nontrivial factor of n, which must be odd and composite.
+	 */
+	static BigInteger rho(final BigInteger n) {
+		return rho(n, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a nontrivial factor of n, which must be odd and composite, or null
+	 * if none is found within roughly limit iterations.
+	 */
+	static BigInteger rho(final BigInteger n, final long limit) {
+
+		for (BigInteger c = ONE;; c = c.add(ONE)) {
+
+			final BigInteger g = rho(n, c, limit);
+
+			if (g == null || !g.equals(n))
+				return g;
+		}
+	}
+
+	/**
+	 * Runs Brent's cycle search on y = y<sup>2</sup> + c mod n, returning a
+	 * factor of n which is n itself if the search failed, or null if it passed
+	 * limit iterations.
+	 */
+	private static BigInteger rho(final BigInteger n, final BigInteger c, final long limit) {
+
+		final ModularContext m = new ModularContext(n);
+		final int[] montC = m.toMontgomery(c);
+
+		final int[] y = m.toMontgomery(TWO);
+		final int[] x = y.clone();
+		final int[] ys = y.clone();
+		final int[] q = m.one();
+		final int[] difference = m.newElement();
+		BigInteger g = ONE;
+
+		for (long r = 1; g.equals(ONE); r <<= 1) {
+
+			if (r > limit)
+				return null;
+
+			System.arraycopy(y, 0, x, 0, y.length);
+
+			for (long i = 0; i < r; i++) {
+				m.multiply(y, y, y);
+				m.add(y, montC, y);
+			}
+
+			for (long k = 0; k < r && g.equals(ONE); k += BATCH) {
+
+				System.arraycopy(y, 0, ys, 0, y.length);
+
+				for (long i = Math.min(BATCH, r - k); i > 0; i--) {
+					m.multiply(y, y, y);
+					m.add(y, montC, y);
+					m.subtract(x, y, difference);
+					m.multiply(q, difference, q);
+				}
+
+				g = IntegerUtils.gcd(n, m.fromMontgomery(q));
+			}
+		}
+
+		if (g.equals(n))
+			do {
+				m.multiply(ys, ys, ys);
+				m.add(ys, montC, ys);
+				m.subtract(x, ys, difference);
+				g = IntegerUtils.gcd(n, m.fromMontgomery(difference));
+			} while (g.equals(ONE));
+
+		return g;
+	}
+}
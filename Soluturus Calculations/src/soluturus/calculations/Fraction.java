@@ -8,8 +8,13 @@ import java.math.BigInteger;
  * aware manner for internal usage in non symbolic contexts in which the end user does
  * not use the lambda.core module, which contains the main Fraction class.
  * <p>
- * Stores two {@link BigInteger BigIntegers}, which serve as the numerator and
- * denominator.
+ * Stores its numerator and denominator as a pair of longs whenever both fit,
+ * which is almost always, and only promotes them to {@link BigInteger
+ * BigIntegers} when they do not. Arithmetic on two long pairs cancels common
+ * factors before multiplying, so that no gcd of the whole result is needed,
+ * and falls back to BigIntegers only when a product or sum overflows. Fractions
+ * are always in lowest terms with a positive denominator, so each value has
+ * exactly one representation.
  * 
  * @author Miles K Bertrand
  *
@@ -19,57 +24,222 @@ public class Fraction implements Comparable<Fraction> {
 	public static final Fraction ONE = new Fraction(1);
 	public static final Fraction FOUR = new Fraction(4);
 
-	private final BigInteger numerator;
-	private final BigInteger denominator;
-
-	public Fraction(double number) {
-
-		if (Double.isNaN(number))
-			throw new IllegalArgumentException();
-
-		int denom = 1;
+	/**
+	 * The numerator and denominator if both fit in a long, in which case den is
+	 * positive, or else 0 and 0.
+	 */
+	private final long num;
+	private final long den;
+
+	/**
+	 * The numerator and denominator as BigIntegers, which are always present if
+	 * they do not fit in longs, and are otherwise only created when requested.
+	 */
+	private BigInteger numerator;
+	private BigInteger denominator;
+
+	/**
+	 * Creates a fraction which is already in lowest terms with a positive
+	 * denominator.
+	 */
+	private Fraction(final long num, final long den, final BigInteger numerator, final BigInteger denominator) {
+		this.num = num;
+		this.den = den;
+		this.numerator = numerator;
+		this.denominator = denominator;
+	}
 
-		while (number % 1 != 0) {
-			number *= 10;
-			denom *= 10;
-		}
+	private Fraction(final Fraction f) {
+		this(f.num, f.den, f.numerator, f.denominator);
+	}
 
-		long gcd = PrimitiveMath.gcd((long) number, denom);
-		numerator = BigInteger.valueOf((long) number / gcd);
-		denominator = BigInteger.valueOf(denom / gcd);
+	/**
+	 * Creates the fraction which is exactly equal to number. Every finite double is
+	 * a dyadic rational m 2<sup>e</sup>, so the denominator is always a power of
+	 * two: 0.1 is 3602879701896397/36028797018963968, not 1/10, for which see
+	 * {@link #approximate(BigDecimal, long) approximate}.
+	 *
+	 * @param number
+	 * @throws IllegalArgumentException if number is NaN or infinite
+	 */
+	public Fraction(final double number) {
+		this(valueOf(number));
 	}
 
 	public Fraction(final long number) {
-		this(BigInteger.valueOf(number));
+		this(number, 1, null, null);
 	}
 
 	public Fraction(final long numerator, final long denominator) {
-		this(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator), true, true);
+		this(valueOf(numerator, denominator));
 	}
 
 	public Fraction(final BigDecimal number) {
-
-		final BigInteger numerator = number.scaleByPowerOfTen(number.scale()).toBigInteger();
-		final BigInteger denominator = BigDecimal.valueOf(1, -number.scale()).toBigInteger();
-		final BigInteger gcd = IntegerUtils.gcd(numerator, denominator);
-		this.numerator = numerator.divide(gcd);
-		this.denominator = denominator.divide(gcd);
+		this(number.scale() <= 0 ? number.toBigIntegerExact() : number.unscaledValue(),
+				number.scale() <= 0 ? BigInteger.ONE : BigInteger.TEN.pow(number.scale()), false, true);
 	}
 
 	public Fraction(final BigInteger number) {
-		this.numerator = number;
-		this.denominator = BigInteger.ONE;
+		this(number, BigInteger.ONE, false, false);
 	}
 
 	public Fraction(final BigInteger numerator, final BigInteger denominator) {
 		this(numerator, denominator, true, true);
 	}
 
-	Fraction(BigInteger numerator, BigInteger denominator, final boolean checkSigns, final boolean removeGCD) {
+	Fraction(final BigInteger numerator, final BigInteger denominator, final boolean checkSigns,
+			final boolean removeGCD) {
+		this(valueOf(numerator, denominator, checkSigns, removeGCD));
+	}
+
+	/**
+	 * Returns the fraction numerator / denominator in lowest terms.
+	 *
+	 * @param numerator
+	 * @param denominator
+	 * @return numerator / denominator
+	 * @throws ArithmeticException if denominator is zero
+	 */
+	public static Fraction valueOf(long numerator, long denominator) {
+
+		if (denominator == 0)
+			throw new ArithmeticException("Zero denominator");
+
+		final long gcd = PrimitiveMath.gcd(numerator, denominator);
+
+		// The gcd is only negative if it is 2^63, in which case both are
+		// Long.MIN_VALUE.
+		if (gcd > 0) {
+			numerator /= gcd;
+			denominator /= gcd;
+		}
+
+		if (denominator > 0)
+			return new Fraction(numerator, denominator, null, null);
+		else if (numerator != Long.MIN_VALUE && denominator != Long.MIN_VALUE)
+			return new Fraction(-numerator, -denominator, null, null);
+
+		return valueOf(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator), true, true);
+	}
+
+	/**
+	 * Returns the fraction which is exactly equal to number.
+	 *
+	 * @param number
+	 * @return number as a fraction
+	 * @throws IllegalArgumentException if number is NaN or infinite
+	 */
+	public static Fraction valueOf(final double number) {
+
+		if (!Double.isFinite(number))
+			throw new IllegalArgumentException("Not finite: " + number);
+		else if (number == 0)
+			return new Fraction(0, 1, null, null);
+
+		final long bits = Double.doubleToRawLongBits(number);
+		final int biased = (int) (bits >>> 52 & 0x7FF);
+
+		// Subnormals have no implicit leading bit and the exponent of the smallest
+		// normal.
+		long mantissa = bits & (1L << 52) - 1;
+		int exponent = biased - 1075;
+
+		if (biased == 0)
+			exponent++;
+		else
+			mantissa |= 1L << 52;
+
+		// Dividing out the common powers of two leaves the fraction in lowest terms.
+		final int shift = Math.min(Long.numberOfTrailingZeros(mantissa), Math.max(-exponent, 0));
+		mantissa >>= shift;
+		exponent += shift;
+
+		if (number < 0)
+			mantissa = -mantissa;
+
+		if (exponent >= 0)
+			return valueOf(BigInteger.valueOf(mantissa).shiftLeft(exponent), BigInteger.ONE, false, false);
+		else if (-exponent < Long.SIZE - 1)
+			return new Fraction(mantissa, 1L << -exponent, null, null);
+
+		return valueOf(BigInteger.valueOf(mantissa), BigInteger.ONE.shiftLeft(-exponent), false, false);
+	}
+
+	/**
+	 * Returns the fraction closest to number among those with a denominator no
+	 * greater than maxDenominator, which is number itself if its denominator is
+	 * small enough.
+	 * <p>
+	 * The best approximations are the convergents of the continued fraction of
+	 * number and the semiconvergents between them, so this takes one division for
+	 * each term of the continued fraction until the denominators pass
+	 * maxDenominator, which is logarithmic in maxDenominator.
+	 *
+	 * @param number
+	 * @param maxDenominator the largest allowed denominator
+	 * @return the best rational approximation of number
+	 * @throws IllegalArgumentException if maxDenominator is not positive
+	 */
+	public static Fraction approximate(final BigDecimal number, final long maxDenominator) {
+
+		if (maxDenominator < 1)
+			throw new IllegalArgumentException("Illegal maximum denominator: " + maxDenominator);
+
+		final Fraction exact = new Fraction(number);
+		final BigInteger max = BigInteger.valueOf(maxDenominator);
+
+		if (exact.getDenominator().compareTo(max) <= 0)
+			return exact;
+
+		// The approximations of -x are those of x negated.
+		BigInteger n = exact.getNumerator().abs();
+		BigInteger d = exact.getDenominator();
+
+		// p0/q0 and p1/q1 are the last two convergents.
+		BigInteger p0 = BigInteger.ZERO;
+		BigInteger q0 = BigInteger.ONE;
+		BigInteger p1 = BigInteger.ONE;
+		BigInteger q1 = BigInteger.ZERO;
+
+		while (true) {
+
+			final BigInteger[] qr = n.divideAndRemainder(d);
+			final BigInteger q2 = q0.add(qr[0].multiply(q1));
+
+			if (q2.compareTo(max) > 0)
+				break;
+
+			final BigInteger p2 = p0.add(qr[0].multiply(p1));
+			p0 = p1;
+			q0 = q1;
+			p1 = p2;
+			q1 = q2;
+			n = d;
+			d = qr[1];
+		}
+
+		// The largest semiconvergent which fits competes with the last convergent.
+		final BigInteger k = max.subtract(q0).divide(q1);
+		final Fraction semiconvergent = new Fraction(p0.add(k.multiply(p1)), q0.add(k.multiply(q1)));
+		final Fraction convergent = new Fraction(p1, q1);
+
+		final Fraction target = exact.abs();
+		final Fraction best = semiconvergent.subtract(target).abs().compareTo(convergent.subtract(target).abs()) < 0
+				? semiconvergent
+				: convergent;
+
+		return exact.signum() < 0 ? best.additiveInverse() : best;
+	}
+
+	private static Fraction valueOf(BigInteger numerator, BigInteger denominator, final boolean checkSigns,
+			final boolean removeGCD) {
+
+		if (denominator.signum() == 0)
+			throw new ArithmeticException("Zero denominator");
 
 		if (checkSigns && denominator.signum() == -1) {
 			numerator = numerator.negate();
-			denominator = denominator.abs();
+			denominator = denominator.negate();
 		}
 		if (removeGCD) {
 
@@ -79,23 +249,65 @@ public class Fraction implements Comparable<Fraction> {
 			denominator = denominator.divide(gcd);
 		}
 
-		this.numerator = numerator;
-		this.denominator = denominator;
+		if (numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE)
+			return new Fraction(numerator.longValue(), denominator.longValue(), numerator, denominator);
+
+		return new Fraction(0, 0, numerator, denominator);
+	}
+
+	/**
+	 * Returns whether both the numerator and denominator are held as longs.
+	 */
+	boolean isSmall() {
+		return den != 0;
+	}
+
+	/**
+	 * Returns the numerator as a long, if {@link #isSmall()}.
+	 */
+	long longNumerator() {
+		return num;
+	}
+
+	/**
+	 * Returns the denominator as a long, if {@link #isSmall()}.
+	 */
+	long longDenominator() {
+		return den;
 	}
 
 	// Getters
 
 	public final BigInteger getNumerator() {
+
+		// Racing threads can only create equal BigIntegers.
+		if (numerator == null)
+			numerator = BigInteger.valueOf(num);
+
 		return numerator;
 	}
 
 	public final BigInteger getDenominator() {
+
+		if (denominator == null)
+			denominator = BigInteger.valueOf(den);
+
 		return denominator;
 	}
 
 	@Override
 	public int compareTo(final Fraction o) {
-		return numerator.multiply(o.denominator).compareTo(denominator.multiply(o.numerator));
+
+		if (isSmall() && o.isSmall()) {
+
+			// Compares the 128 bit products num * o.den and den * o.num.
+			final long high = Math.multiplyHigh(num, o.den);
+			final long oHigh = Math.multiplyHigh(den, o.num);
+
+			return high != oHigh ? Long.compare(high, oHigh) : Long.compareUnsigned(num * o.den, den * o.num);
+		}
+
+		return getNumerator().multiply(o.getDenominator()).compareTo(getDenominator().multiply(o.getNumerator()));
 	}
 
 	@Override
@@ -104,46 +316,101 @@ public class Fraction implements Comparable<Fraction> {
 		if (!(o instanceof Fraction))
 			return false;
 
-		return numerator.equals(((Fraction) o).numerator) && denominator.equals(((Fraction) o).denominator);
+		final Fraction f = (Fraction) o;
+
+		// Fractions are held as longs whenever they fit, so only both forms can match.
+		if (isSmall() || f.isSmall())
+			return num == f.num && den == f.den;
+
+		return numerator.equals(f.numerator) && denominator.equals(f.denominator);
+	}
+
+	@Override
+	public int hashCode() {
+		return isSmall() ? Long.hashCode(31 * num + den) : 31 * numerator.hashCode() + denominator.hashCode();
 	}
 
 	@Override
 	public String toString() {
+
+		if (isSmall())
+			return den == 1 ? Long.toString(num) : num + "/" + den;
+
 		return numerator.toString() + (denominator.equals(BigInteger.ONE) ? "" : "/" + denominator.toString());
 	}
 
 	public Fraction abs() {
-		return new Fraction(numerator.abs(), denominator, false, false);
+		return signum() < 0 ? additiveInverse() : this;
+	}
+
+	public int signum() {
+		return isSmall() ? Long.signum(num) : numerator.signum();
 	}
 
 	public Fraction additiveInverse() {
-		return new Fraction(numerator.negate(), denominator, false, false);
+
+		if (isSmall() && num != Long.MIN_VALUE)
+			return new Fraction(-num, den, null, null);
+
+		return valueOf(getNumerator().negate(), getDenominator(), false, false);
 	}
 
 	public Fraction reciprocal() {
-		if (numerator.signum() == 0)
+
+		if (signum() == 0)
 			throw new ArithmeticException();
-		return new Fraction(denominator, numerator, true, false);
+
+		if (isSmall() && num != Long.MIN_VALUE)
+			return num > 0 ? new Fraction(den, num, denominator, numerator) : new Fraction(-den, -num, null, null);
+
+		return valueOf(getDenominator(), getNumerator(), true, false);
 	}
 
 	public Fraction add(final Fraction addend) {
-		return new Fraction(numerator.multiply(addend.denominator).add(addend.numerator.multiply(denominator)),
-				denominator.multiply(addend.denominator), false, true);
+
+		if (isSmall() && addend.isSmall()) {
+
+			// With g = gcd(b, d), a/b + c/d = (a d/g + c b/g) / (b d/g).
+			final long g = PrimitiveMath.gcd(den, addend.den);
+			final long b = den / g;
+			final long d = addend.den / g;
+
+			if (!PrimitiveMath.multiplyOverflows(num, d) && !PrimitiveMath.multiplyOverflows(addend.num, b)
+					&& !PrimitiveMath.multiplyOverflows(den, d) && !PrimitiveMath.addOverflows(num * d, addend.num * b))
+				return valueOf(num * d + addend.num * b, den * d);
+		}
+
+		return valueOf(
+				getNumerator().multiply(addend.getDenominator()).add(addend.getNumerator().multiply(getDenominator())),
+				getDenominator().multiply(addend.getDenominator()), false, true);
 	}
 
 	public Fraction subtract(final Fraction subtrahend) {
-		return new Fraction(
-				numerator.multiply(subtrahend.denominator).subtract(subtrahend.numerator.multiply(denominator)),
-				denominator.multiply(subtrahend.denominator), false, true);
+		return add(subtrahend.additiveInverse());
 	}
 
-	public Fraction multiply(Fraction multiplicand) {
-		return new Fraction(numerator.multiply(multiplicand.numerator), denominator.multiply(multiplicand.denominator),
-				false, true);
+	public Fraction multiply(final Fraction multiplicand) {
+
+		if (isSmall() && multiplicand.isSmall()) {
+
+			// Cancelling across the product keeps it in lowest terms.
+			final long g1 = PrimitiveMath.gcd(num, multiplicand.den);
+			final long g2 = PrimitiveMath.gcd(multiplicand.num, den);
+
+			final long a = num / g1;
+			final long b = den / g2;
+			final long c = multiplicand.num / g2;
+			final long d = multiplicand.den / g1;
+
+			if (!PrimitiveMath.multiplyOverflows(a, c) && !PrimitiveMath.multiplyOverflows(b, d))
+				return new Fraction(a * c, b * d, null, null);
+		}
+
+		return valueOf(getNumerator().multiply(multiplicand.getNumerator()),
+				getDenominator().multiply(multiplicand.getDenominator()), false, true);
 	}
 
-	public Fraction divide(Fraction divisor) {
-		return new Fraction(numerator.multiply(divisor.denominator), denominator.multiply(divisor.numerator), false,
-				true);
+	public Fraction divide(final Fraction divisor) {
+		return multiply(divisor.reciprocal());
 	}
 }
@@ -0,0 +1,145 @@
+package soluturus.calculations;
+
+import java.math.BigInteger;
+import java.util.stream.Collector;
+
+/**
+ * Mutable sum of fractions, which defers reducing the sum to lowest terms until
+ * it is read.
+ * <p>
+ * Each addend is scaled onto a running common denominator, which is the lcm of
+ * the denominators added so far, so adding a fraction whose denominator
+ * divides it takes a single multiplication and no gcd at all. Like
+ * {@link Fraction}, the sum is held in longs while it fits and only promoted
+ * to BigIntegers once it overflows.
+ * <p>
+ * An accumulator is not thread-safe, and is meant to be confined to a single
+ * thread. Parallel sums give each thread its own accumulator and
+ * {@link #combine(FractionAccumulator) combine} them afterwards, as
+ * {@link #summing()} does.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class FractionAccumulator {
+
+	/**
+	 * The sum as num/den while bigDen is null, with den positive.
+	 */
+	private long num;
+	private long den = 1;
+
+	private BigInteger bigNum;
+	private BigInteger bigDen;
+
+	/**
+	 * Creates an accumulator whose sum is zero.
+	 */
+	public FractionAccumulator() {
+	}
+
+	/**
+	 * Returns a collector which sums fractions with an accumulator for each
+	 * thread.
+	 *
+	 * @return a collector for the sum of fractions
+	 */
+	public static Collector<Fraction, ?, Fraction> summing() {
+		return Collector.of(FractionAccumulator::new, FractionAccumulator::add, FractionAccumulator::combine,
+				FractionAccumulator::toFraction, Collector.Characteristics.UNORDERED);
+	}
+
+	public FractionAccumulator add(final Fraction addend) {
+
+		if (addend.isSmall())
+			return add(addend.longNumerator(), addend.longDenominator());
+
+		return add(addend.getNumerator(), addend.getDenominator());
+	}
+
+	public FractionAccumulator subtract(final Fraction subtrahend) {
+		return add(subtrahend.additiveInverse());
+	}
+
+	/**
+	 * Adds the sum of other to this, leaving other unchanged.
+	 *
+	 * @param other
+	 * @return this accumulator
+	 */
+	public FractionAccumulator combine(final FractionAccumulator other) {
+
+		if (other.bigDen == null)
+			return add(other.num, other.den);
+
+		return add(other.bigNum, other.bigDen);
+	}
+
+	/**
+	 * Returns the sum so far in lowest terms, which is the only time it is
+	 * reduced. The accumulator may still be added to afterwards.
+	 *
+	 * @return the sum of every fraction added
+	 */
+	public Fraction toFraction() {
+		return bigDen == null ? Fraction.valueOf(num, den) : new Fraction(bigNum, bigDen);
+	}
+
+	/**
+	 * Adds n/d, where d is positive.
+	 */
+	private FractionAccumulator add(final long n, final long d) {
+
+		if (bigDen != null)
+			return add(BigInteger.valueOf(n), BigInteger.valueOf(d));
+
+		// With g = gcd(den, d), lcm(den, d) = den (d / g) = d (den / g).
+		final long g = den % d == 0 ? d : PrimitiveMath.gcd(den, d);
+		final long scale = d / g;
+		final long multiplier = den / g;
+
+		if (!PrimitiveMath.multiplyOverflows(num, scale) && !PrimitiveMath.multiplyOverflows(n, multiplier)
+				&& !PrimitiveMath.multiplyOverflows(den, scale)
+				&& !PrimitiveMath.addOverflows(num * scale, n * multiplier)) {
+
+			num = num * scale + n * multiplier;
+			den *= scale;
+			return this;
+		}
+
+		bigNum = BigInteger.valueOf(num);
+		bigDen = BigInteger.valueOf(den);
+
+		return add(BigInteger.valueOf(n), BigInteger.valueOf(d));
+	}
+
+	/**
+	 * Adds n/d, where d is positive.
+	 */
+	private FractionAccumulator add(final BigInteger n, final BigInteger d) {
+
+		if (bigDen == null) {
+			bigNum = BigInteger.valueOf(num);
+			bigDen = BigInteger.valueOf(den);
+		}
+
+		final BigInteger[] qr = bigDen.divideAndRemainder(d);
+
+		if (qr[1].signum() == 0) {
+			bigNum = bigNum.add(n.multiply(qr[0]));
+			return this;
+		}
+
+		final BigInteger g = IntegerUtils.gcd(bigDen, d);
+		final BigInteger scale = d.divide(g);
+
+		bigNum = bigNum.multiply(scale).add(n.multiply(bigDen.divide(g)));
+		bigDen = bigDen.multiply(scale);
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return bigDen == null ? num + "/" + den : bigNum + "/" + bigDen;
+	}
+}
@@ -0,0 +1,141 @@
+package soluturus.calculations;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Immutable sequence of fractions stored as BigInteger numerators over a single
+ * shared denominator, which is the lcm of their denominators.
+ * <p>
+ * This suits the coefficients of power series, which are summed against powers
+ * of one argument. {@link #evaluate(BigDecimal, int, int, MathContext)
+ * evaluate} holds those powers as binary fixed point integers, so each term
+ * takes only integer multiplications and shifts, and the shared denominator is
+ * divided out once at the end rather than from every term.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class FractionVector {
+
+	private static final double LOG2_10 = 3.321928094887362;
+
+	/**
+	 * Bits carried beyond the requested precision, which absorb the truncation of
+	 * each power.
+	 */
+	private static final int GUARD_BITS = 32;
+
+	private final BigInteger[] numerators;
+	private final BigInteger denominator;
+
+	/**
+	 * Creates the vector of the given fractions, in order.
+	 *
+	 * @param fractions
+	 */
+	public FractionVector(final List<Fraction> fractions) {
+
+		BigInteger lcm = BigInteger.ONE;
+
+		for (Fraction f : fractions)
+			if (lcm.mod(f.getDenominator()).signum() != 0)
+				lcm = IntegerUtils.lcm(lcm, f.getDenominator());
+
+		numerators = new BigInteger[fractions.size()];
+		denominator = lcm;
+
+		for (int i = 0; i < numerators.length; i++) {
+			final Fraction f = fractions.get(i);
+			numerators[i] = f.getNumerator().multiply(lcm.divide(f.getDenominator()));
+		}
+	}
+
+	// Getters
+
+	public int size() {
+		return numerators.length;
+	}
+
+	public Fraction get(final int index) {
+		return new Fraction(numerators[index], denominator);
+	}
+
+	public BigInteger getNumerator(final int index) {
+		return numerators[index];
+	}
+
+	/**
+	 * Returns the denominator shared by every fraction, which is not necessarily
+	 * in lowest terms with any of their numerators.
+	 *
+	 * @return the shared denominator
+	 */
+	public BigInteger getDenominator() {
+		return denominator;
+	}
+
+	/**
+	 * Returns the sum of c<sub>i</sub> x<sup>offset + stride i</sup> over the
+	 * fractions c<sub>i</sub> of this vector, stopping once a term falls below the
+	 * first nonzero term by the precision of mc. Returns null if every term has
+	 * been summed without reaching that point, in which case the series needs
+	 * more coefficients.
+	 *
+	 * @param x      the argument of the series
+	 * @param offset the power of x in the first term
+	 * @param stride the difference between the powers of x in successive terms
+	 * @param mc     the precision of the sum
+	 * @return the sum of the series, or null if it needs more terms
+	 * @throws IllegalArgumentException if offset is negative, stride is not
+	 *                                  positive or mc has unlimited precision
+	 */
+	public BigDecimal evaluate(final BigDecimal x, final int offset, final int stride, final MathContext mc) {
+
+		if (offset < 0 || stride < 1 || mc.getPrecision() == 0)
+			throw new IllegalArgumentException();
+
+		if (x.signum() == 0)
+			return offset != 0 || numerators.length == 0 ? BigDecimal.ZERO
+					: new BigDecimal(numerators[0]).divide(new BigDecimal(denominator), mc);
+
+		final int precisionBits = (int) Math.ceil(mc.getPrecision() * LOG2_10);
+
+		// Enough fraction bits that the first power of x keeps precisionBits
+		// significant bits even when x is small.
+		final long magnitude = offset * (long) Math.floor((x.precision() - x.scale() - 1) * LOG2_10);
+		final int bits = (int) Math.max(0, precisionBits + GUARD_BITS - magnitude);
+
+		final BigInteger step = fixedPoint(x.pow(stride), bits);
+		BigInteger power = fixedPoint(x.pow(offset), bits);
+		BigInteger sum = BigInteger.ZERO;
+		BigInteger threshold = null;
+
+		for (BigInteger numerator : numerators) {
+
+			final BigInteger term = numerator.multiply(power);
+			sum = sum.add(term);
+
+			if (threshold == null) {
+				if (term.signum() != 0)
+					threshold = term.abs().shiftRight(precisionBits);
+			} else if (term.abs().compareTo(threshold) <= 0)
+				return new BigDecimal(sum).divide(new BigDecimal(denominator.shiftLeft(bits)), mc);
+
+			power = power.multiply(step).shiftRight(bits);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns v 2<sup>bits</sup> rounded to an integer.
+	 */
+	private static BigInteger fixedPoint(final BigDecimal v, final int bits) {
+		return v.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(bits))).setScale(0, RoundingMode.HALF_EVEN)
+				.toBigInteger();
+	}
+}
@@ -0,0 +1,403 @@
+package soluturus.calculations;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
+
+import java.math.BigInteger;
+
+/**
+ * Computes the Greatest Common Divisor of BigIntegers, optionally alongside the
+ * cofactors which express it as a combination of its arguments.
+ * <p>
+ * Operands are reduced in tiers by their size. Above
+ * {@value #HALF_GCD_THRESHOLD} bits, the half-gcd algorithm finds the matrix of
+ * Euclidean steps which halves the operands from their leading halves
+ * recursively, taking subquadratic time. Lehmer's algorithm then simulates
+ * Euclidean steps on the leading 62 bits of the operands, applying them to the
+ * whole operands only once per batch. The last long-sized step is finished by
+ * {@link PrimitiveMath#gcd(long, long)}.
+ * <p>
+ * Every reduction replaces the operands with their image under a unimodular
+ * matrix, which preserves their gcd. The matrices found from leading bits are
+ * normalized against the whole operands before being applied, so the result is
+ * exact even where those bits mislead them.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class Gcd {
+
+	static final int HALF_GCD_THRESHOLD = 1 << 16;
+
+	/**
+	 * Below this, half-gcd finds its matrix with Lehmer's algorithm rather than
+	 * recursing.
+	 */
+	private static final int HALF_GCD_BASE = 1 << 13;
+
+	/**
+	 * A 2 x 2 matrix with determinant ±1, such that (a, b) = M (α, β) for the
+	 * operands (a, b) it was found from and their reduced forms (α, β).
+	 */
+	private static final class Matrix {
+
+		BigInteger m00 = ONE;
+		BigInteger m01 = ZERO;
+		BigInteger m10 = ZERO;
+		BigInteger m11 = ONE;
+		int det = 1;
+
+		/**
+		 * Right-multiplies by the matrix of one Euclidean step with quotient q.
+		 */
+		void step(final BigInteger q) {
+
+			final BigInteger t0 = m00.multiply(q).add(m01);
+			final BigInteger t1 = m10.multiply(q).add(m11);
+
+			m01 = m00;
+			m11 = m10;
+			m00 = t0;
+			m10 = t1;
+			det = -det;
+		}
+
+		/**
+		 * Right-multiplies by the inverse of the Lehmer matrix (A B; C D) with
+		 * determinant lehmerDet.
+		 */
+		void lehmer(final long a, final long b, final long c, final long d, final int lehmerDet) {
+
+			final BigInteger bigA = BigInteger.valueOf(a);
+			final BigInteger bigB = BigInteger.valueOf(b);
+			final BigInteger bigC = BigInteger.valueOf(c);
+			final BigInteger bigD = BigInteger.valueOf(d);
+
+			BigInteger t00 = m00.multiply(bigD).subtract(m01.multiply(bigC));
+			BigInteger t01 = m01.multiply(bigA).subtract(m00.multiply(bigB));
+			BigInteger t10 = m10.multiply(bigD).subtract(m11.multiply(bigC));
+			BigInteger t11 = m11.multiply(bigA).subtract(m10.multiply(bigB));
+
+			if (lehmerDet < 0) {
+				t00 = t00.negate();
+				t01 = t01.negate();
+				t10 = t10.negate();
+				t11 = t11.negate();
+			}
+
+			m00 = t00;
+			m01 = t01;
+			m10 = t10;
+			m11 = t11;
+			det *= lehmerDet;
+		}
+
+		void multiply(final Matrix o) {
+
+			final BigInteger t00 = m00.multiply(o.m00).add(m01.multiply(o.m10));
+			final BigInteger t01 = m00.multiply(o.m01).add(m01.multiply(o.m11));
+			final BigInteger t10 = m10.multiply(o.m00).add(m11.multiply(o.m10));
+			final BigInteger t11 = m10.multiply(o.m01).add(m11.multiply(o.m11));
+
+			m00 = t00;
+			m01 = t01;
+			m10 = t10;
+			m11 = t11;
+			det *= o.det;
+		}
+
+		/**
+		 * Returns (α, β) = M<sup>-1</sup> (a, b), adjusting the columns of M so that
+		 * α &ge; β &ge; 0.
+		 */
+		BigInteger[] reduce(final BigInteger a, final BigInteger b) {
+
+			BigInteger alpha = m11.multiply(a).subtract(m01.multiply(b));
+			BigInteger beta = m00.multiply(b).subtract(m10.multiply(a));
+
+			if (det < 0) {
+				alpha = alpha.negate();
+				beta = beta.negate();
+			}
+
+			if (alpha.signum() < 0) {
+				alpha = alpha.negate();
+				m00 = m00.negate();
+				m10 = m10.negate();
+				det = -det;
+			}
+
+			if (beta.signum() < 0) {
+				beta = beta.negate();
+				m01 = m01.negate();
+				m11 = m11.negate();
+				det = -det;
+			}
+
+			if (alpha.compareTo(beta) < 0) {
+
+				final BigInteger t = alpha;
+				alpha = beta;
+				beta = t;
+
+				BigInteger s = m00;
+				m00 = m01;
+				m01 = s;
+				s = m10;
+				m10 = m11;
+				m11 = s;
+				det = -det;
+			}
+
+			return new BigInteger[] { alpha, beta };
+		}
+
+		/**
+		 * Replaces the cofactor matrix u with M<sup>-1</sup> u.
+		 */
+		void applyInverse(final BigInteger[] u) {
+
+			BigInteger t0 = m11.multiply(u[0]).subtract(m01.multiply(u[2]));
+			BigInteger t1 = m11.multiply(u[1]).subtract(m01.multiply(u[3]));
+			BigInteger t2 = m00.multiply(u[2]).subtract(m10.multiply(u[0]));
+			BigInteger t3 = m00.multiply(u[3]).subtract(m10.multiply(u[1]));
+
+			if (det < 0) {
+				t0 = t0.negate();
+				t1 = t1.negate();
+				t2 = t2.negate();
+				t3 = t3.negate();
+			}
+
+			u[0] = t0;
+			u[1] = t1;
+			u[2] = t2;
+			u[3] = t3;
+		}
+	}
+
+	private Gcd() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns gcd(a, b), where a and b are not negative.
+	 * <p>
+	 * If u is not null, it must hold the row-major matrix (1 0; 0 1), and is
+	 * replaced with the matrix U such that (gcd(a, b), 0) = U (a, b).
+	 */
+	static BigInteger gcd(BigInteger a, BigInteger b, final BigInteger[] u) {
+
+		if (a.compareTo(b) < 0) {
+
+			final BigInteger t = a;
+			a = b;
+			b = t;
+
+			if (u != null) {
+				u[0] = ZERO;
+				u[1] = ONE;
+				u[2] = ONE;
+				u[3] = ZERO;
+			}
+		}
+
+		while (b.bitLength() >= HALF_GCD_THRESHOLD) {
+
+			final Matrix m = halfGcd(a, b);
+			final BigInteger[] reduced = m.reduce(a, b);
+
+			if (reduced[0].compareTo(a) < 0) {
+
+				if (u != null)
+					m.applyInverse(u);
+
+				a = reduced[0];
+				b = reduced[1];
+			} else {
+				final BigInteger[] qr = a.divideAndRemainder(b);
+				euclid(qr[0], u);
+				a = b;
+				b = qr[1];
+			}
+		}
+
+		while (b.bitLength() >= Long.SIZE) {
+
+			final long[] l = lehmer(a, b);
+
+			if (l == null) {
+				final BigInteger[] qr = a.divideAndRemainder(b);
+				euclid(qr[0], u);
+				a = b;
+				b = qr[1];
+			} else {
+
+				final BigInteger bigA = BigInteger.valueOf(l[0]);
+				final BigInteger bigB = BigInteger.valueOf(l[1]);
+				final BigInteger bigC = BigInteger.valueOf(l[2]);
+				final BigInteger bigD = BigInteger.valueOf(l[3]);
+
+				final BigInteger t = a.multiply(bigA).add(b.multiply(bigB));
+				b = a.multiply(bigC).add(b.multiply(bigD));
+				a = t;
+
+				if (u != null)
+					for (int column = 0; column < 2; column++) {
+						final BigInteger u0 = u[column];
+						final BigInteger u1 = u[2 + column];
+						u[column] = u0.multiply(bigA).add(u1.multiply(bigB));
+						u[2 + column] = u0.multiply(bigC).add(u1.multiply(bigD));
+					}
+			}
+		}
+
+		if (u == null)
+			return b.signum() == 0 ? a : BigInteger.valueOf(PrimitiveMath.gcd(b.longValue(), a.mod(b).longValue()));
+
+		while (b.signum() != 0) {
+			final BigInteger[] qr = a.divideAndRemainder(b);
+			euclid(qr[0], u);
+			a = b;
+			b = qr[1];
+		}
+
+		return a;
+	}
+
+	/**
+	 * Replaces the cofactor matrix u, if any, with the result of one Euclidean
+	 * step with quotient q, (0 1; 1 -q) u.
+	 */
+	private static void euclid(final BigInteger q, final BigInteger[] u) {
+
+		if (u == null)
+			return;
+
+		final BigInteger t0 = u[0];
+		final BigInteger t1 = u[1];
+
+		u[0] = u[2];
+		u[1] = u[3];
+		u[2] = t0.subtract(q.multiply(u[2]));
+		u[3] = t1.subtract(q.multiply(u[3]));
+	}
+
+	/**
+	 * Simulates Euclidean steps on the leading 62 bits of a and b, where a &ge; b
+	 * and b has at least 64 bits, by Knuth's Algorithm L. Returns { A, B, C, D }
+	 * such that the next remainders are Aa + Bb and Ca + Db, or null if not even
+	 * one step could be simulated.
+	 */
+	private static long[] lehmer(final BigInteger a, final BigInteger b) {
+
+		final int shift = a.bitLength() - 62;
+
+		long x = a.shiftRight(shift).longValue();
+		long y = b.shiftRight(shift).longValue();
+
+		long ca = 1;
+		long cb = 0;
+		long cc = 0;
+		long cd = 1;
+
+		while (y + cc != 0 && y + cd != 0) {
+
+			final long q = (x + ca) / (y + cc);
+
+			if (q != (x + cb) / (y + cd))
+				break;
+
+			long t = ca - q * cc;
+			ca = cc;
+			cc = t;
+
+			t = cb - q * cd;
+			cb = cd;
+			cd = t;
+
+			t = x - q * y;
+			x = y;
+			y = t;
+		}
+
+		return cb == 0 ? null : new long[] { ca, cb, cc, cd };
+	}
+
+	/**
+	 * Returns a matrix M of Euclidean steps such that M<sup>-1</sup> (a, b) is
+	 * roughly half the size of a, where a &ge; b &ge; 0.
+	 */
+	private static Matrix halfGcd(final BigInteger a, final BigInteger b) {
+
+		final int n = a.bitLength();
+		final int s = n / 2 + 1;
+
+		if (b.bitLength() <= s)
+			return new Matrix();
+		else if (n < HALF_GCD_BASE)
+			return lehmerMatrix(a, b, s);
+
+		// The steps which halve the leading half of the operands also take the whole
+		// operands about a quarter of the way down.
+		final Matrix m = halfGcd(a.shiftRight(n / 2), b.shiftRight(n / 2));
+
+		final BigInteger[] reduced = m.reduce(a, b);
+		BigInteger alpha = reduced[0];
+		BigInteger beta = reduced[1];
+
+		if (beta.bitLength() <= s)
+			return m;
+
+		final BigInteger[] qr = alpha.divideAndRemainder(beta);
+		m.step(qr[0]);
+		alpha = beta;
+		beta = qr[1];
+
+		if (beta.bitLength() <= s)
+			return m;
+
+		// The second half brings alpha down to s bits from where it now stands.
+		final int shift = Math.max(0, 2 * s - alpha.bitLength());
+		final Matrix m2 = halfGcd(alpha.shiftRight(shift), beta.shiftRight(shift));
+
+		// Normalizes m2 against the whole operands before composing it.
+		m2.reduce(alpha, beta);
+		m.multiply(m2);
+
+		return m;
+	}
+
+	/**
+	 * Returns the matrix of the Euclidean steps which bring b down to at most s
+	 * bits, simulating most of them with Lehmer's algorithm.
+	 */
+	private static Matrix lehmerMatrix(BigInteger a, BigInteger b, final int s) {
+
+		final Matrix m = new Matrix();
+
+		while (b.bitLength() > s) {
+
+			final long[] l = b.bitLength() > s + Long.SIZE ? lehmer(a, b) : null;
+
+			if (l == null) {
+
+				final BigInteger[] qr = a.divideAndRemainder(b);
+				m.step(qr[0]);
+				a = b;
+				b = qr[1];
+			} else {
+
+				// Each simulated step negates the determinant, so it is 1 exactly when
+				// the top left coefficient is positive.
+				m.lehmer(l[0], l[1], l[2], l[3], l[0] > 0 ? 1 : -1);
+
+				final BigInteger t = a.multiply(BigInteger.valueOf(l[0])).add(b.multiply(BigInteger.valueOf(l[1])));
+				b = a.multiply(BigInteger.valueOf(l[2])).add(b.multiply(BigInteger.valueOf(l[3])));
+				a = t;
+			}
+		}
+
+		return m;
+	}
+}
@@ -5,7 +5,9 @@ import static java.math.BigInteger.ZERO;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.stream.IntStream;
 
 /**
  * Defines static methods for integer (in the numeric sense) manipulation.
@@ -24,31 +26,228 @@ public final class IntegerUtils {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * The factorials which fit within a long.
+	 */
+	private static final long[] SMALL_FACTORIALS = new long[21];
+
+	static {
+		SMALL_FACTORIALS[0] = 1;
+		for (int i = 1; i < SMALL_FACTORIALS.length; i++)
+			SMALL_FACTORIALS[i] = SMALL_FACTORIALS[i - 1] * i;
+	}
+
+	/**
+	 * Returns the factorial of this number, or 1 if it is negative.
+	 * <p>
+	 * Uses Luschny's prime swing algorithm, which splits n! into
+	 * (&lfloor;n/2&rfloor;!)<sup>2</sup> times the swing n! /
+	 * (&lfloor;n/2&rfloor;!)<sup>2</sup>. The exponent of each prime p in the
+	 * swing is the amount of odd terms in &lfloor;n/p&rfloor;,
+	 * &lfloor;n/p<sup>2</sup>&rfloor;, ..., and each of its prime powers is no
+	 * greater than n, so the swing is a product of small numbers which are
+	 * multiplied by a balanced product tree.
+	 * 
+	 * @param number
+	 * @return <code>number</code>!
+	 * @throws ArithmeticException if <code>number</code> does not fit within an
+	 *                             int
+	 */
 	public static final BigInteger factorial(final BigInteger number) {
-		// TODO improve
-		if (number.equals(ZERO) || number.equals(ONE))
+
+		if (number.signum() < 0)
 			return ONE;
-		else {
-			BigInteger ttl = ONE;
-			for (BigInteger i = BigInteger.TWO; i.compareTo(number) < 1; i = i.add(ONE))
-				ttl = ttl.multiply(i);
-			return ttl;
+		else if (number.compareTo(BigInteger.valueOf(SMALL_FACTORIALS.length)) < 0)
+			return BigInteger.valueOf(SMALL_FACTORIALS[number.intValueExact()]);
+
+		final int n = number.intValueExact();
+
+		return factorial(n, PrimeFinder.DEFAULT_FINDER.primesInRange(2, n + 1L).toArray());
+	}
+
+	/**
+	 * Returns n!, where primes holds at least every prime up to n in ascending
+	 * order.
+	 */
+	private static final BigInteger factorial(final int n, final long[] primes) {
+
+		if (n < SMALL_FACTORIALS.length)
+			return BigInteger.valueOf(SMALL_FACTORIALS[n]);
+
+		final BigInteger half = factorial(n / 2, primes);
+
+		return half.multiply(half).multiply(swing(n, primes));
+	}
+
+	private static final BigInteger swing(final int n, final long[] primes) {
+
+		final long[] powers = new long[primes.length];
+		int size = 0;
+
+		for (long p : primes) {
+
+			if (p > n)
+				break;
+
+			long power = 1;
+
+			for (long q = n / p; q > 0; q /= p)
+				if ((q & 1) != 0)
+					power *= p;
+
+			if (power != 1)
+				powers[size++] = power;
+		}
+
+		return product(powers, 0, size);
+	}
+
+	/**
+	 * Returns the product of the positive values within [from, to), halving the
+	 * range recursively so that the two operands of each multiplication are
+	 * about the same size.
+	 */
+	static final BigInteger product(final long[] values, final int from, final int to) {
+
+		if (to - from <= 16) {
+
+			BigInteger product = ONE;
+			long word = 1;
+
+			for (int i = from; i < to; i++)
+				if (word <= Long.MAX_VALUE / values[i])
+					word *= values[i];
+				else {
+					product = product.multiply(BigInteger.valueOf(word));
+					word = values[i];
+				}
+
+			return product.multiply(BigInteger.valueOf(word));
+		}
+
+		final int mid = (from + to) >>> 1;
+
+		return product(values, from, mid).multiply(product(values, mid, to));
+	}
+
+	/**
+	 * Returns the product of the count consecutive integers starting at first,
+	 * halving the range recursively.
+	 */
+	private static final BigInteger product(final BigInteger first, final long count) {
+
+		if (count <= 16) {
+
+			BigInteger product = ONE;
+
+			for (long i = 0; i < count; i++)
+				product = product.multiply(first.add(BigInteger.valueOf(i)));
+
+			return product;
 		}
+
+		final long half = count >>> 1;
+
+		return product(first, half).multiply(product(first.add(BigInteger.valueOf(half)), count - half));
 	}
 
-	public static final BigInteger nCk(final BigInteger n, final BigInteger k) {
-		return factorial(n).divide(factorial(k).multiply(factorial(n.subtract(k))));
+	/**
+	 * Returns the binomial coefficient n choose k, which is 0 unless 0 &le; k
+	 * &le; n.
+	 * <p>
+	 * When n fits within an int and k is comparable to n, this multiplies the
+	 * prime powers of the coefficient directly. By Kummer's theorem, the exponent
+	 * of each prime p is the amount of borrows made when subtracting k from n in
+	 * base p, so each prime power is again no greater than n. Otherwise, the k
+	 * consecutive integers ending at n are multiplied and divided by k!, which
+	 * avoids finding every prime up to n when k is small.
+	 * 
+	 * @param n
+	 * @param k
+	 * @return n choose k
+	 * @throws ArithmeticException if neither k nor n - k fits within an int
+	 */
+	public static final BigInteger nCk(final BigInteger n, BigInteger k) {
+
+		if (k.signum() < 0 || k.compareTo(n) > 0)
+			return ZERO;
+
+		final BigInteger nMinusK = n.subtract(k);
+
+		if (k.compareTo(nMinusK) > 0)
+			k = nMinusK;
+
+		// Below n / log2(n) terms, the product is cheaper than the primes up to n.
+		if (n.bitLength() >= Integer.SIZE || k.longValue() < n.longValue() / Math.max(1, n.bitLength())) {
+
+			final int count = k.intValueExact();
+
+			return product(n.subtract(k).add(ONE), count).divide(factorial(k));
+		}
+
+		final long nl = n.longValue();
+		final long kl = k.longValue();
+
+		final long[] primes = PrimeFinder.DEFAULT_FINDER.primesInRange(2, nl + 1).toArray();
+		final long[] powers = new long[primes.length];
+		int size = 0;
+
+		for (long p : primes) {
+
+			long power = 1;
+			boolean borrow = false;
+
+			for (long a = nl, b = kl; a > 0; a /= p, b /= p) {
+				borrow = a % p < b % p + (borrow ? 1 : 0);
+				if (borrow)
+					power *= p;
+			}
+
+			if (power != 1)
+				powers[size++] = power;
+		}
+
+		return product(powers, 0, size);
 	}
 
 	/**
-	 * Returns the Greatest Common Divisor of the two arguments a and b.
+	 * Returns the Greatest Common Divisor of the two arguments a and b, which is
+	 * never negative.
+	 * <p>
+	 * Arguments which fit in a long use {@link PrimitiveMath#gcd(long, long)
+	 * binary gcd}. Larger ones are reduced by Lehmer's algorithm, which batches
+	 * Euclidean steps found from their leading bits, and those of tens of
+	 * thousands of bits are first halved recursively by the subquadratic
+	 * half-gcd algorithm.
 	 * 
 	 * @param a
 	 * @param b
 	 * @return gcd(a, b)
 	 */
 	public static final BigInteger gcd(final BigInteger a, final BigInteger b) {
-		return b.equals(ZERO) ? a : gcd(b, a.mod(b));
+
+		// Below 63 bits, even the absolute values of a and b fit in a long.
+		if (a.bitLength() < Long.SIZE - 1 && b.bitLength() < Long.SIZE - 1)
+			return BigInteger.valueOf(PrimitiveMath.gcd(a.longValue(), b.longValue()));
+
+		return Gcd.gcd(a.abs(), b.abs(), null);
+	}
+
+	/**
+	 * Returns { gcd(a, b), x, y } such that ax + by = gcd(a, b), where the gcd is
+	 * never negative.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return the gcd of a and b and its cofactors
+	 */
+	public static final BigInteger[] gcdExtended(final BigInteger a, final BigInteger b) {
+
+		// Rows of the matrix which maps (|a|, |b|) to (gcd, 0).
+		final BigInteger[] u = { ONE, ZERO, ZERO, ONE };
+		final BigInteger gcd = Gcd.gcd(a.abs(), b.abs(), u);
+
+		return new BigInteger[] { gcd, a.signum() < 0 ? u[0].negate() : u[0], b.signum() < 0 ? u[1].negate() : u[1] };
 	}
 
 	/**
@@ -59,14 +258,145 @@ public final class IntegerUtils {
 	 * @return lcm(a, b)
 	 */
 	public static final BigInteger lcm(final BigInteger a, final BigInteger b) {
+
+		if (a.bitLength() < Long.SIZE - 1 && b.bitLength() < Long.SIZE - 1) {
+
+			final long x = a.longValue();
+			final long y = b.longValue();
+			final long gcd = PrimitiveMath.gcd(x, y);
+
+			if (gcd != 0 && !PrimitiveMath.multiplyOverflows(x / gcd, y))
+				return BigInteger.valueOf(x / gcd * y);
+		}
+
 		return a.multiply(b).divide(gcd(a, b));
 	}
 
+	/**
+	 * Returns, for each of numbers, the Greatest Common Divisor of it and the
+	 * product of every other number, which is never negative. A result above 1
+	 * means that number shares a factor with at least one other.
+	 * <p>
+	 * Uses Bernstein's batch gcd, which builds a product tree over numbers and
+	 * then reduces the product P at its root modulo the square of each node on the
+	 * way back down. Each leaf x then holds P mod x<sup>2</sup>, which is x times
+	 * the product of the others mod x. This takes quasi-linear time in the total
+	 * size of numbers, rather than the quadratic time of a gcd for each pair, and
+	 * each level of either tree is computed in parallel.
+	 * 
+	 * @param numbers
+	 * @return the gcd of each number and the product of the others
+	 * @throws ArithmeticException if any of numbers is zero
+	 */
+	public static final BigInteger[] batchGcd(final BigInteger[] numbers) {
+
+		final ArrayList<BigInteger[]> tree = new ArrayList<>();
+		BigInteger[] level = new BigInteger[numbers.length];
+
+		for (int i = 0; i < numbers.length; i++) {
+
+			if (numbers[i].signum() == 0)
+				throw new ArithmeticException("Zero shares every factor");
+
+			level[i] = numbers[i].abs();
+		}
+
+		tree.add(level);
+
+		while (level.length > 1) {
+
+			final BigInteger[] below = level;
+			final BigInteger[] above = new BigInteger[(below.length + 1) / 2];
+
+			IntStream.range(0, above.length).parallel().forEach(i -> above[i] = 2 * i + 1 < below.length
+					? below[2 * i].multiply(below[2 * i + 1])
+					: below[2 * i]);
+
+			tree.add(level = above);
+		}
+
+		// The root is P itself, which is already reduced modulo its own square.
+		BigInteger[] remainders = level;
+
+		for (int depth = tree.size() - 2; depth >= 0; depth--) {
+
+			final BigInteger[] nodes = tree.get(depth);
+			final BigInteger[] above = remainders;
+			final BigInteger[] below = new BigInteger[nodes.length];
+
+			IntStream.range(0, nodes.length).parallel()
+					.forEach(i -> below[i] = above[i / 2].mod(nodes[i].multiply(nodes[i])));
+
+			remainders = below;
+		}
+
+		final BigInteger[] leaves = tree.get(0);
+		final BigInteger[] products = remainders;
+		final BigInteger[] gcds = new BigInteger[numbers.length];
+
+		IntStream.range(0, gcds.length).parallel()
+				.forEach(i -> gcds[i] = gcd(leaves[i], products[i].divide(leaves[i])));
+
+		return gcds;
+	}
+
+	/**
+	 * Returns log<sub>base</sub> number exactly, or null if it is irrational.
+	 * <p>
+	 * The logarithm is rational exactly when number and base are powers of a
+	 * common integer, which must then be a power of the smallest root r of base,
+	 * base = r<sup>q</sup>, found by
+	 * {@link ExponentiationUtils#perfectPower(BigInteger) perfectPower}. The
+	 * exponent p for which number might equal r<sup>p</sup> is estimated from the
+	 * bit lengths and leading bits of both, and confirmed with a single power,
+	 * giving the logarithm p / q.
+	 * 
+	 * @param number
+	 * @param base
+	 * @return the exact logarithm, or null if it is irrational
+	 * @throws ArithmeticException if number is not positive or base is below 2
+	 */
+	public static final Fraction ilog(final BigInteger number, final BigInteger base) {
+
+		if (number.signum() < 1)
+			throw new ArithmeticException("Logarithm of a nonpositive number");
+		else if (base.compareTo(BigInteger.TWO) < 0)
+			throw new ArithmeticException("Logarithm to a base below 2: " + base);
+		else if (number.equals(ONE))
+			return new Fraction(0);
+
+		final BigInteger[] root = ExponentiationUtils.perfectPower(base);
+		final BigInteger r = root[0];
+		final long p = Math.round(log2(number) / log2(r));
+
+		// r^p has between p(bits - 1) + 1 and p * bits bits, where bits is that of r.
+		if (p < 1 || p * (r.bitLength() - 1) >= number.bitLength() || p * r.bitLength() < number.bitLength()
+				|| !r.pow((int) p).equals(number))
+			return null;
+
+		return new Fraction(BigInteger.valueOf(p), root[1]);
+	}
+
+	/**
+	 * Returns the base 2 logarithm of n, which is positive, from its bit length
+	 * and leading 63 bits.
+	 */
+	private static double log2(final BigInteger n) {
+		final int shift = Math.max(0, n.bitLength() - 63);
+		return shift + Math.log(n.shiftRight(shift).doubleValue()) / Math.log(2);
+	}
+
 	/**
 	 * Returns all prime factors of this number.
 	 * <p>
 	 * The prime factors of a number are all of the prime numbers which, when
-	 * multiplied together, will have a product equal to <code>number</code>.
+	 * multiplied together, will have a product equal to <code>number</code>. They
+	 * are returned in ascending order, followed by -1 if <code>number</code> is
+	 * negative.
+	 * <p>
+	 * Small prime factors are found by trial division, and larger ones by
+	 * Pollard's rho algorithm, so the time taken depends on the size of the
+	 * second largest prime factor rather than on <code>number</code> itself.
 	 * 
 	 * @param number
 	 * @return
@@ -78,76 +408,240 @@ public final class IntegerUtils {
 		else if (number.equals(ONE))
 			return new BigInteger[] { ONE };
 
-		ArrayList<BigInteger> factors = factor0(number);
-		return factors.toArray(new BigInteger[factors.size()]);
+		return factorization(number).toArray();
 	}
 
-	private static final ArrayList<BigInteger> factor0(BigInteger number) {
+	/**
+	 * Returns the prime factorization of this number, which holds each distinct
+	 * prime factor once alongside its exponent.
+	 * <p>
+	 * Numbers within the {@link SmallestPrimeFactorTable#getDefault() default
+	 * smallest prime factor table} are factored by looking up each prime factor.
+	 * Larger prime factors are found as they are by {@link #factor(BigInteger)
+	 * factor}, and each factorization is kept in the
+	 * {@link FactorizationCache#DEFAULT_CACHE default cache} so that numbers which
+	 * are factored repeatedly are only factored once.
+	 * 
+	 * @param number
+	 * @return the prime factorization of <code>number</code>
+	 * @throws ArithmeticException if <code>number</code> is zero
+	 */
+	public static final Factorization factorization(final BigInteger number) {
 
-		if (number.signum() == -1) {
-			final ArrayList<BigInteger> factorsn = factor0(number.negate());
-			factorsn.add(BigInteger.valueOf(-1));
-			return factorsn;
+		if (number.signum() == 0)
+			throw new ArithmeticException("Zero has no prime factorization");
+
+		final SmallestPrimeFactorTable table = SmallestPrimeFactorTable.getDefault();
+
+		// Looking up the table is cheaper than looking up the cache.
+		if (table != null && number.bitLength() < Integer.SIZE) {
+
+			final int n = Math.abs(number.intValue());
+
+			if (table.contains(n))
+				return table.factorization(n, number.signum());
 		}
 
-		ArrayList<BigInteger> factors = new ArrayList<BigInteger>();
+		return FactorizationCache.DEFAULT_CACHE.computeIfAbsent(number, IntegerUtils::factorize);
+	}
 
-		Iterator<BigInteger> primes = PrimeFinder.DEFAULT_FINDER.iterator();
+	private static final Factorization factorize(final BigInteger number) {
+		return Factorization.of(number.signum(), Factorizer.factor(number.abs()));
+	}
 
-		while (!number.equals(ONE)) {
+	/**
+	 * Returns an iterator over the prime powers which divide this number, in
+	 * ascending order of their primes. The sign of number is ignored.
+	 * <p>
+	 * Each prime power is found only when it is requested. Small primes are found
+	 * one at a time by trial division, so a caller which stops early never pays
+	 * for splitting the large cofactor that remains, which is only done once the
+	 * iterator reaches it.
+	 *
+	 * @param number
+	 * @return the prime powers which divide number
+	 * @throws ArithmeticException if number is zero
+	 */
+	public static final Iterator<PrimePower> factorIterator(final BigInteger number) {
 
-			BigInteger cursor = primes.next();
+		if (number.signum() == 0)
+			throw new ArithmeticException("Zero has no prime factorization");
 
-			while (number.remainder(cursor).equals(ZERO)) {
-				number = number.divide(cursor);
-				factors.add(cursor);
-			}
-		}
+		return Factorizer.iterator(number.abs());
+	}
+
+	/**
+	 * Returns the smallest prime which divides this number, ignoring its sign.
+	 *
+	 * @param number
+	 * @return the smallest prime factor of number
+	 * @throws ArithmeticException if number is zero, 1 or -1
+	 */
+	public static final BigInteger smallestPrimeFactor(final BigInteger number) {
+
+		final Iterator<PrimePower> factors = factorIterator(number);
 
-		return factors;
+		if (!factors.hasNext())
+			throw new ArithmeticException(number + " has no prime factors");
+
+		return factors.next().prime();
 	}
 
-	private static final class PowerCalcNode {
+	/**
+	 * Returns whether no square other than 1 divides this number, returning as
+	 * soon as any repeated prime is found.
+	 *
+	 * @param number
+	 * @return whether number is squarefree
+	 */
+	public static final boolean isSquarefree(final BigInteger number) {
 
-		int occurences;
-		BigInteger number;
+		if (number.signum() == 0)
+			return false;
 
-		PowerCalcNode(BigInteger number) {
-			this.number = number;
-			occurences = 1;
-		}
+		for (Iterator<PrimePower> factors = factorIterator(number); factors.hasNext();)
+			if (factors.next().exponent() > 1)
+				return false;
+
+		return true;
 	}
 
-	public static final BigInteger[] asPower(BigInteger number) {
+	/**
+	 * Factors this number with a bounded amount of work, returning the prime
+	 * factorization of the part that was factored alongside the cofactor that was
+	 * not.
+	 * <p>
+	 * Small primes are always divided out, perfect powers and primes are always
+	 * recognized, and composite cofactors below 2<sup>63</sup> are always split,
+	 * since rho on longs needs at most a few tens of thousands of iterations for
+	 * them. Each larger composite cofactor is only given roughly budget
+	 * iterations of Pollard's rho algorithm and is never passed to the quadratic
+	 * sieve. A cofactor which is not split within the budget is returned whole,
+	 * so a small budget finds the factors that are cheap to find and leaves the
+	 * hard ones.
+	 *
+	 * @param number
+	 * @param budget the rho iterations allowed for each composite cofactor of 63
+	 *               bits or more
+	 * @return the factored part of number and its unfactored cofactor
+	 * @throws ArithmeticException      if number is zero
+	 * @throws IllegalArgumentException if budget is not positive
+	 */
+	public static final PartialFactorization factorWithBudget(final BigInteger number, final long budget) {
 
 		if (number.signum() == 0)
-			return new BigInteger[] { ZERO, ONE };
-		else if (number.equals(ONE))
-			return new BigInteger[] { ONE, ONE };
+			throw new ArithmeticException("Zero has no prime factorization");
+		else if (budget < 1)
+			throw new IllegalArgumentException("Illegal budget: " + budget);
 
-		ArrayList<PowerCalcNode> nodes = new ArrayList<>();
+		final ArrayList<BigInteger> factors = new ArrayList<>();
+		final BigInteger cofactor = Factorizer.factor(number.abs(), budget, factors);
 
-		outer: for (BigInteger b : factor(number)) {
-			for (PowerCalcNode p : nodes)
-				if (p.number.equals(b)) {
-					p.occurences++;
-					continue outer;
-				}
+		return new PartialFactorization(Factorization.of(number.signum(), factors), cofactor);
+	}
 
-			nodes.add(new PowerCalcNode(b));
-		}
+	/**
+	 * Returns Euler's totient of each integer in [lo, hi), which is the amount of
+	 * integers from 1 to n which are coprime to n, with the totient of lo first.
+	 * <p>
+	 * Each of these range methods sieves the whole range at once in parallel
+	 * segments rather than factoring each integer, which takes time proportional
+	 * to the total amount of distinct prime factors in the range.
+	 *
+	 * @param lo the first integer, which must be positive
+	 * @param hi the exclusive bound of the integers
+	 * @return φ(n) for each n in [lo, hi)
+	 * @throws IllegalArgumentException if the range is not of positive integers or
+	 *                                  does not fit in an array
+	 */
+	public static final long[] totients(final long lo, final long hi) {
 
-		int gcd = nodes.get(0).occurences;
+		final long[] totients = new long[MultiplicativeSieve.length(lo, hi)];
 
-		for (PowerCalcNode p : nodes)
-			gcd = (int) PrimitiveMath.gcd(gcd, p.occurences);
+		MultiplicativeSieve.sieve(lo, hi, (p, e, power) -> power - power / p,
+				(offset, values, length) -> System.arraycopy(values, 0, totients, offset, length));
 
-		BigInteger base = ONE;
+		return totients;
+	}
+
+	/**
+	 * Returns the Möbius function of each integer in [lo, hi), which is 0 if n is
+	 * not squarefree and otherwise (-1)<sup>k</sup> for the k primes dividing n.
+	 *
+	 * @param lo the first integer, which must be positive
+	 * @param hi the exclusive bound of the integers
+	 * @return μ(n) for each n in [lo, hi)
+	 * @throws IllegalArgumentException if the range is not of positive integers or
+	 *                                  does not fit in an array
+	 */
+	public static final byte[] mobius(final long lo, final long hi) {
 
-		for (PowerCalcNode p : nodes)
-			base = base.multiply(p.number.pow(p.occurences / gcd));
+		final byte[] mobius = new byte[MultiplicativeSieve.length(lo, hi)];
+
+		MultiplicativeSieve.sieve(lo, hi, (p, e, power) -> e == 1 ? -1 : 0, (offset, values, length) -> {
+			for (int i = 0; i < length; i++)
+				mobius[offset + i] = (byte) values[i];
+		});
+
+		return mobius;
+	}
 
-		return new BigInteger[] { base, BigInteger.valueOf(gcd) };
+	/**
+	 * Returns the sum of the positive divisors of each integer in [lo, hi).
+	 *
+	 * @param lo the first integer, which must be positive
+	 * @param hi the exclusive bound of the integers
+	 * @return σ(n) for each n in [lo, hi)
+	 * @throws IllegalArgumentException if the range is not of positive integers or
+	 *                                  does not fit in an array
+	 * @throws ArithmeticException      if any sum overflows a long
+	 */
+	public static final long[] divisorSums(final long lo, final long hi) {
+
+		final long[] sums = new long[MultiplicativeSieve.length(lo, hi)];
+
+		// 1 + p + ... + p^e, without computing p^(e + 1) which may overflow.
+		MultiplicativeSieve.sieve(lo, hi, (p, e, power) -> Math.addExact(power, (power - 1) / (p - 1)),
+				(offset, values, length) -> System.arraycopy(values, 0, sums, offset, length));
+
+		return sums;
+	}
 
+	/**
+	 * Returns the amount of positive divisors of each integer in [lo, hi).
+	 *
+	 * @param lo the first integer, which must be positive
+	 * @param hi the exclusive bound of the integers
+	 * @return the divisor count of each n in [lo, hi)
+	 * @throws IllegalArgumentException if the range is not of positive integers or
+	 *                                  does not fit in an array
+	 */
+	public static final int[] divisorCounts(final long lo, final long hi) {
+
+		final int[] counts = new int[MultiplicativeSieve.length(lo, hi)];
+
+		MultiplicativeSieve.sieve(lo, hi, (p, e, power) -> e + 1, (offset, values, length) -> {
+			for (int i = 0; i < length; i++)
+				counts[offset + i] = (int) values[i];
+		});
+
+		return counts;
+	}
+
+	/**
+	 * Returns { base, exponent } such that number = base<sup>exponent</sup> with
+	 * the exponent as large as possible. A negative number is written as the
+	 * largest odd power of a negative base, such as -8 = (-2)<sup>3</sup>.
+	 * <p>
+	 * Rather than factoring number, which may take exponential time, exact roots
+	 * of each prime degree below its bit length are probed by
+	 * {@link ExponentiationUtils#perfectPower(BigInteger) perfectPower}, so this
+	 * takes polynomial time however hard number is to factor.
+	 * 
+	 * @param number
+	 * @return the smallest base of number and its exponent
+	 */
+	public static final BigInteger[] asPower(final BigInteger number) {
+		return ExponentiationUtils.perfectPower(number);
 	}
 }
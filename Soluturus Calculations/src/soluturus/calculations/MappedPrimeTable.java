@@ -0,0 +1,311 @@
+package soluturus.calculations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only prime table stored as a wheel-30 bitset within a memory-mapped
+ * file, allowing several processes to share one pre-built table through the
+ * page cache without copying it onto the heap.
+ * <p>
+ * Byte k of the bitset represents [30k, 30k + 30), where bit i is set if
+ * 30k + {@link #RESIDUES residues}[i] is prime; the primes 2, 3 and 5 are
+ * implicit. The bitset is split into blocks of {@value #BLOCK_BYTES} bytes and
+ * preceded by the amount of primes below the start of each block, so that
+ * counting the primes below any number only scans a single block.
+ * <p>
+ * The file layout is as follows, with all values in big-endian order:
+ *
+ * <pre>
+ * int      magic
+ * long     limit     exclusive upper bound of the table
+ * long     count     amount of primes below limit
+ * int      blocks    amount of blocks in the bitset
+ * long[]   index     amount of primes below the start of each block
+ * byte[]   bitset
+ * </pre>
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class MappedPrimeTable {
+
+	private static final int MAGIC = 0x53505431;
+	private static final int HEADER_BYTES = 24;
+
+	static final int BLOCK_BYTES = 1 << 16;
+	static final long BLOCK_SPAN = 30L * BLOCK_BYTES;
+
+	private static final int[] RESIDUES = { 1, 7, 11, 13, 17, 19, 23, 29 };
+
+	// Maps n mod 30 onto its bit, or -1 if n is divisible by 2, 3 or 5.
+	private static final int[] BIT = new int[30];
+
+	static {
+		Arrays.fill(BIT, -1);
+		for (int i = 0; i < RESIDUES.length; i++)
+			BIT[RESIDUES[i]] = i;
+	}
+
+	private final Path file;
+	private final MappedByteBuffer bitset;
+	private final long[] index;
+	private final long limit;
+	private final long count;
+
+	private MappedPrimeTable(final Path file, final MappedByteBuffer bitset, final long[] index, final long limit,
+			final long count) {
+		this.file = file;
+		this.bitset = bitset;
+		this.index = index;
+		this.limit = limit;
+		this.count = count;
+	}
+
+	/**
+	 * Maps a table previously written by {@link #write(Path, long) write}.
+	 *
+	 * @param file the file containing the table
+	 * @return the mapped table
+	 * @throws IOException if the file cannot be read or is not a prime table
+	 */
+	static MappedPrimeTable map(final Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+			while (header.hasRemaining())
+				if (channel.read(header) < 0)
+					throw new IOException("Truncated prime table: " + file);
+
+			header.flip();
+
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not a prime table: " + file);
+
+			final long limit = header.getLong();
+			final long count = header.getLong();
+			final int blocks = header.getInt();
+
+			final ByteBuffer indexBuffer = ByteBuffer.allocate(8 * blocks);
+
+			while (indexBuffer.hasRemaining())
+				if (channel.read(indexBuffer) < 0)
+					throw new IOException("Truncated prime table: " + file);
+
+			indexBuffer.flip();
+
+			final long[] index = new long[blocks];
+			indexBuffer.asLongBuffer().get(index);
+
+			final long offset = HEADER_BYTES + 8L * blocks;
+			final long length = (long) blocks * BLOCK_BYTES;
+
+			if (channel.size() < offset + length)
+				throw new IOException("Truncated prime table: " + file);
+
+			return new MappedPrimeTable(file, channel.map(FileChannel.MapMode.READ_ONLY, offset, length), index,
+					limit, count);
+		}
+	}
+
+	/**
+	 * Sieves every prime below limit and writes them to file as a table which can
+	 * be {@link #map(Path) mapped}.
+	 * <p>
+	 * The limit is rounded up to a whole amount of blocks.
+	 *
+	 * @param file  the file to write the table to
+	 * @param limit the exclusive upper bound of the primes within the table
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(final Path file, final long limit) throws IOException {
+
+		if (limit < 1 || limit > (Integer.MAX_VALUE - HEADER_BYTES) / (BLOCK_BYTES + 8L) * BLOCK_SPAN)
+			throw new IllegalArgumentException("Illegal prime table limit: " + limit);
+
+		final int blocks = (int) ((limit + BLOCK_SPAN - 1) / BLOCK_SPAN);
+		final long[] base = PrimeSieve.segment(0, (long) Math.sqrt((double) blocks * BLOCK_SPAN) + 2, new long[0], 0);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			final long[] index = new long[blocks];
+			final ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+			long count = 0;
+
+			channel.position(HEADER_BYTES + 8L * blocks);
+
+			for (int b = 0; b < blocks; b++) {
+
+				index[b] = count;
+
+				final long lo = b * BLOCK_SPAN;
+				final long[] primes = PrimeSieve.segment(lo, lo + BLOCK_SPAN, base, base.length);
+
+				block.clear();
+				Arrays.fill(block.array(), (byte) 0);
+
+				for (long p : primes) {
+					final int bit = BIT[(int) (p % 30)];
+					if (bit >= 0)
+						block.array()[(int) ((p - lo) / 30)] |= 1 << bit;
+				}
+
+				count += primes.length;
+
+				while (block.hasRemaining())
+					channel.write(block);
+			}
+
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 8 * blocks);
+			header.putInt(MAGIC).putLong((long) blocks * BLOCK_SPAN).putLong(count).putInt(blocks);
+			header.asLongBuffer().put(index);
+			header.clear();
+
+			channel.position(0);
+
+			while (header.hasRemaining())
+				channel.write(header);
+		}
+	}
+
+	Path file() {
+		return file;
+	}
+
+	/**
+	 * Returns the exclusive upper bound of the primes within this table.
+	 */
+	long limit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the amount of primes within this table.
+	 */
+	long count() {
+		return count;
+	}
+
+	/**
+	 * Returns whether n is prime, where 0 &le; n &lt; {@link #limit() limit}.
+	 */
+	boolean isPrime(final long n) {
+
+		if (n < 7)
+			return n == 2 || n == 3 || n == 5;
+
+		final int bit = BIT[(int) (n % 30)];
+		return bit >= 0 && (bitset.get((int) (n / 30)) & 1 << bit) != 0;
+	}
+
+	/**
+	 * Returns the smallest prime greater than n within this table, or -1 if there
+	 * is none.
+	 */
+	long nextPrime(final long n) {
+
+		if (n < 2)
+			return 2;
+		else if (n < 3)
+			return 3;
+		else if (n < 5)
+			return 5;
+
+		final int bytes = bitset.capacity();
+		int k = (int) ((n + 1) / 30);
+
+		if (k >= bytes)
+			return -1;
+
+		// Drops the bits of the first byte which represent numbers no greater than n.
+		int bits = bitset.get(k) & 0xFF;
+		final long offset = n + 1 - 30L * k;
+		for (int i = 0; i < RESIDUES.length && RESIDUES[i] < offset; i++)
+			bits &= ~(1 << i);
+
+		while (bits == 0) {
+			if (++k >= bytes)
+				return -1;
+			bits = bitset.get(k) & 0xFF;
+		}
+
+		return 30L * k + RESIDUES[Integer.numberOfTrailingZeros(bits)];
+	}
+
+	/**
+	 * Returns the amount of primes no greater than n, where 0 &le; n &lt;
+	 * {@link #limit() limit}.
+	 */
+	long countTo(final long n) {
+
+		if (n < 7)
+			return n < 2 ? 0 : n < 3 ? 1 : n < 5 ? 2 : 3;
+
+		final int block = (int) (n / BLOCK_SPAN);
+		final int last = (int) (n / 30);
+		long total = index[block] + (block == 0 ? 3 : 0);
+
+		for (int k = block * BLOCK_BYTES; k < last; k++)
+			total += Integer.bitCount(bitset.get(k) & 0xFF);
+
+		final int bits = bitset.get(last) & 0xFF;
+		final long offset = n - 30L * last;
+		for (int i = 0; i < RESIDUES.length && RESIDUES[i] <= offset; i++)
+			if ((bits & 1 << i) != 0)
+				total++;
+
+		return total;
+	}
+
+	/**
+	 * Returns the n<sup>th</sup> prime, where 1 &le; n &le; {@link #count() count}.
+	 */
+	long select(final long n) {
+
+		if (n <= 3)
+			return n == 1 ? 2 : n == 2 ? 3 : 5;
+
+		// The last block starting with fewer than n primes below it.
+		int lo = 0;
+		int hi = index.length - 1;
+
+		while (lo < hi) {
+			final int mid = lo + hi + 1 >>> 1;
+			if (index[mid] < n)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+
+		long remaining = n - (lo == 0 ? 3 : index[lo]);
+
+		for (int k = lo * BLOCK_BYTES;; k++) {
+
+			int bits = bitset.get(k) & 0xFF;
+			final int count = Integer.bitCount(bits);
+
+			if (remaining > count) {
+				remaining -= count;
+				continue;
+			}
+
+			while (--remaining > 0)
+				bits &= bits - 1;
+
+			return 30L * k + RESIDUES[Integer.numberOfTrailingZeros(bits)];
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MappedPrimeTable[" + file + ", " + count + " primes below " + limit + "]";
+	}
+}
@@ -0,0 +1,532 @@
+package soluturus.calculations;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic modulo a fixed odd modulus n, with the parameters of Montgomery
+ * multiplication precomputed once for every operation which uses it.
+ * <p>
+ * Elements are held in Montgomery form, aR mod n with R =
+ * 2<sup>32k</sup>, as arrays of k little-endian 32 bit words. Products are
+ * reduced while they are accumulated, word by word, by the Coarsely Integrated
+ * Operand Scanning method, so no division by n is ever performed. Results are
+ * written into arrays supplied by the caller, so loops of modular operations,
+ * such as those of {@link PrimalityUtils primality tests} or
+ * {@link Factorizer Pollard's rho}, allocate nothing per step. Conversion
+ * to and from Montgomery form costs about one multiplication each way.
+ * <p>
+ * A ModularContext holds scratch space for its multiplications, so it must not
+ * be shared between threads.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class ModularContext {
+
+	private static final long MASK = 0xFFFFFFFFL;
+
+	private final BigInteger modulus;
+
+	/**
+	 * The words of the modulus.
+	 */
+	private final int[] n;
+	private final int k;
+
+	/**
+	 * -n<sup>-1</sup> mod 2<sup>32</sup>.
+	 */
+	private final int negInv;
+
+	/**
+	 * R mod n, which is 1 in Montgomery form.
+	 */
+	private final int[] one;
+
+	/**
+	 * The accumulator of {@link #multiply(int[], int[], int[]) multiply}, with two
+	 * words above the modulus for carries.
+	 */
+	private final int[] t;
+
+	/**
+	 * Creates a context for arithmetic modulo modulus.
+	 *
+	 * @param modulus which must be odd and greater than 1
+	 * @throws ArithmeticException if modulus is even or less than 3
+	 */
+	public ModularContext(final BigInteger modulus) {
+
+		if (modulus.compareTo(BigInteger.TWO) <= 0 || !modulus.testBit(0))
+			throw new ArithmeticException("Montgomery modulus must be odd and greater than 1: " + modulus);
+
+		this.modulus = modulus;
+		k = (modulus.bitLength() + 31) / 32;
+		n = toWords(modulus);
+		t = new int[k + 2];
+
+		// Newton's iteration doubles the correct low bits of the inverse of n each
+		// step, starting with 3 correct bits from n itself.
+		int inv = n[0];
+		for (int i = 0; i < 4; i++)
+			inv *= 2 - n[0] * inv;
+		negInv = -inv;
+
+		one = toWords(ONE.shiftLeft(32 * k).mod(modulus));
+	}
+
+	public BigInteger getModulus() {
+		return modulus;
+	}
+
+	/**
+	 * Returns a new element, which is 0.
+	 *
+	 * @return an array of words which may hold an element
+	 */
+	public int[] newElement() {
+		return new int[k];
+	}
+
+	/**
+	 * Returns a new element which is 1 in Montgomery form.
+	 *
+	 * @return the Montgomery form of 1
+	 */
+	public int[] one() {
+		return one.clone();
+	}
+
+	/**
+	 * Returns the Montgomery form of a.
+	 *
+	 * @param a which may be any integer
+	 * @return aR mod n
+	 */
+	public int[] toMontgomery(final BigInteger a) {
+		return toWords(a.shiftLeft(32 * k).mod(modulus));
+	}
+
+	/**
+	 * Returns the integer of which a is the Montgomery form, from 0 to n - 1.
+	 *
+	 * @param a an element in Montgomery form
+	 * @return aR<sup>-1</sup> mod n
+	 */
+	public BigInteger fromMontgomery(final int[] a) {
+
+		final int[] unit = new int[k];
+		unit[0] = 1;
+
+		final int[] result = new int[k];
+		multiply(a, unit, result);
+
+		return toBigInteger(result);
+	}
+
+	/**
+	 * Stores abR<sup>-1</sup> mod n in result, which is the Montgomery form of the
+	 * product of the integers of which a and b are the Montgomery forms. result
+	 * may be a or b.
+	 *
+	 * @param a      an element in Montgomery form
+	 * @param b      an element in Montgomery form
+	 * @param result the element to hold the product
+	 */
+	public void multiply(final int[] a, final int[] b, final int[] result) {
+
+		final int[] t = this.t;
+		final int[] n = this.n;
+		final int k = this.k;
+
+		for (int j = 0; j < k + 2; j++)
+			t[j] = 0;
+
+		for (int i = 0; i < k; i++) {
+
+			// t += a[i] * b
+			final long ai = a[i] & MASK;
+			long carry = 0;
+
+			for (int j = 0; j < k; j++) {
+				final long sum = (t[j] & MASK) + ai * (b[j] & MASK) + carry;
+				t[j] = (int) sum;
+				carry = sum >>> 32;
+			}
+
+			long sum = (t[k] & MASK) + carry;
+			t[k] = (int) sum;
+			t[k + 1] = (int) (sum >>> 32);
+
+			// t = (t + m * n) / 2^32, where m makes the low word vanish.
+			final long m = (t[0] * negInv) & MASK;
+
+			carry = ((t[0] & MASK) + m * (n[0] & MASK)) >>> 32;
+
+			for (int j = 1; j < k; j++) {
+				sum = (t[j] & MASK) + m * (n[j] & MASK) + carry;
+				t[j - 1] = (int) sum;
+				carry = sum >>> 32;
+			}
+
+			sum = (t[k] & MASK) + carry;
+			t[k - 1] = (int) sum;
+			t[k] = t[k + 1] + (int) (sum >>> 32);
+		}
+
+		if (t[k] != 0 || compare(t, n) >= 0)
+			subtract(t, n, result, k);
+		else
+			System.arraycopy(t, 0, result, 0, k);
+	}
+
+	/**
+	 * Stores a + b mod n in result, which may be a or b.
+	 *
+	 * @param a      an element
+	 * @param b      an element
+	 * @param result the element to hold the sum
+	 */
+	public void add(final int[] a, final int[] b, final int[] result) {
+
+		long carry = 0;
+
+		for (int j = 0; j < k; j++) {
+			final long sum = (a[j] & MASK) + (b[j] & MASK) + carry;
+			result[j] = (int) sum;
+			carry = sum >>> 32;
+		}
+
+		if (carry != 0 || compare(result, n) >= 0)
+			subtract(result, n, result, k);
+	}
+
+	/**
+	 * Stores a - b mod n in result, which may be a or b.
+	 *
+	 * @param a      an element
+	 * @param b      an element
+	 * @param result the element to hold the difference
+	 */
+	public void subtract(final int[] a, final int[] b, final int[] result) {
+
+		// A borrow out of the top word means the difference wrapped below 0.
+		if (subtract(a, b, result, k) != 0) {
+
+			long carry = 0;
+
+			for (int j = 0; j < k; j++) {
+				final long sum = (result[j] & MASK) + (n[j] & MASK) + carry;
+				result[j] = (int) sum;
+				carry = sum >>> 32;
+			}
+		}
+	}
+
+	/**
+	 * Stores a / 2 mod n in result, which may be a. Since halving is linear, this
+	 * holds in Montgomery form as well.
+	 *
+	 * @param a      an element
+	 * @param result the element to hold the half
+	 */
+	public void half(final int[] a, final int[] result) {
+
+		long carry = 0;
+
+		if ((a[0] & 1) != 0)
+			for (int j = 0; j < k; j++) {
+				final long sum = (a[j] & MASK) + (n[j] & MASK) + carry;
+				result[j] = (int) sum;
+				carry = sum >>> 32;
+			}
+		else
+			System.arraycopy(a, 0, result, 0, k);
+
+		for (int j = 0; j < k - 1; j++)
+			result[j] = result[j] >>> 1 | result[j + 1] << 31;
+
+		result[k - 1] = result[k - 1] >>> 1 | (int) carry << 31;
+	}
+
+	/**
+	 * Returns whether a and b are the same element.
+	 *
+	 * @param a
+	 * @param b
+	 * @return whether a equals b
+	 */
+	public boolean equals(final int[] a, final int[] b) {
+
+		for (int j = 0; j < k; j++)
+			if (a[j] != b[j])
+				return false;
+
+		return true;
+	}
+
+	public boolean isZero(final int[] a) {
+
+		for (int j = 0; j < k; j++)
+			if (a[j] != 0)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns base<sup>exponent</sup> mod n.
+	 * <p>
+	 * For whole BigIntegers this defers to {@link BigInteger#modPow(BigInteger,
+	 * BigInteger) modPow}, whose Montgomery multiplication is an intrinsic of the
+	 * virtual machine, and so outruns {@link #powMod(int[], BigInteger)} whenever
+	 * the operands must be converted anyway.
+	 *
+	 * @param base
+	 * @param exponent a negative exponent raises the inverse of base
+	 * @return base<sup>exponent</sup> mod n
+	 * @throws ArithmeticException if exponent is negative and base is not
+	 *                             invertible
+	 */
+	public BigInteger powMod(final BigInteger base, final BigInteger exponent) {
+
+		if (exponent.signum() < 0)
+			return powMod(inverse(base), exponent.negate());
+
+		return base.modPow(exponent, modulus);
+	}
+
+	/**
+	 * Returns base<sup>exponent</sup> in Montgomery form, where base is in
+	 * Montgomery form and exponent is not negative.
+	 * <p>
+	 * The exponent is scanned from its top bit in sliding windows of up to 6
+	 * bits, each ending in a 1 bit, so that one multiplication by a precomputed
+	 * odd power of base serves a whole window.
+	 *
+	 * @param base     an element in Montgomery form
+	 * @param exponent which must not be negative
+	 * @return base<sup>exponent</sup> in Montgomery form
+	 */
+	public int[] powMod(final int[] base, final BigInteger exponent) {
+
+		final int bits = exponent.bitLength();
+		final int width = bits > 671 ? 6 : bits > 239 ? 5 : bits > 79 ? 4 : bits > 23 ? 3 : bits > 6 ? 2 : 1;
+
+		// powers[i] = base^(2i + 1)
+		final int[][] powers = new int[1 << width - 1][];
+		powers[0] = base.clone();
+
+		if (powers.length > 1) {
+
+			final int[] square = newElement();
+			multiply(base, base, square);
+
+			for (int i = 1; i < powers.length; i++) {
+				powers[i] = newElement();
+				multiply(powers[i - 1], square, powers[i]);
+			}
+		}
+
+		final int[] result = one();
+
+		for (int i = bits - 1; i >= 0;) {
+
+			if (!exponent.testBit(i)) {
+				multiply(result, result, result);
+				i--;
+				continue;
+			}
+
+			// The longest window from bit i down which ends in a 1 bit.
+			int low = Math.max(0, i - width + 1);
+			while (!exponent.testBit(low))
+				low++;
+
+			int window = 0;
+
+			for (int j = i; j >= low; j--) {
+				multiply(result, result, result);
+				window = window << 1 | (exponent.testBit(j) ? 1 : 0);
+			}
+
+			multiply(result, powers[window >>> 1], result);
+			i = low - 1;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a<sup>-1</sup> mod n.
+	 *
+	 * @param a
+	 * @return the inverse of a modulo n
+	 * @throws ArithmeticException if a and n are not coprime
+	 */
+	public BigInteger inverse(final BigInteger a) {
+
+		final BigInteger[] gcd = IntegerUtils.gcdExtended(a.mod(modulus), modulus);
+
+		if (!gcd[0].equals(ONE))
+			throw new ArithmeticException("Not invertible modulo " + modulus + ": " + a);
+
+		return gcd[1].mod(modulus);
+	}
+
+	/**
+	 * Returns a square root of a mod n, where n is prime, by the Tonelli-Shanks
+	 * algorithm.
+	 *
+	 * @param a
+	 * @return r such that r<sup>2</sup> &equiv; a (mod n)
+	 * @throws ArithmeticException if a is not a quadratic residue modulo n
+	 */
+	public BigInteger sqrt(BigInteger a) {
+
+		a = a.mod(modulus);
+
+		if (a.signum() == 0)
+			return ZERO;
+		else if (PrimalityUtils.jacobi(a, modulus) != 1)
+			throw new ArithmeticException("Not a quadratic residue modulo " + modulus + ": " + a);
+
+		final BigInteger nMinusOne = modulus.subtract(ONE);
+
+		if (modulus.testBit(1))
+			return powMod(a, modulus.add(ONE).shiftRight(2));
+
+		// n - 1 = q * 2^s with q odd
+		final int s = nMinusOne.getLowestSetBit();
+		final BigInteger q = nMinusOne.shiftRight(s);
+
+		BigInteger z = BigInteger.TWO;
+		while (PrimalityUtils.jacobi(z, modulus) != -1)
+			z = z.add(ONE);
+
+		final int[] montA = toMontgomery(a);
+
+		int m = s;
+		int[] c = powMod(toMontgomery(z), q);
+		final int[] t = powMod(montA, q);
+		final int[] r = powMod(montA, q.add(ONE).shiftRight(1));
+		final int[] square = newElement();
+
+		while (!equals(t, one)) {
+
+			// The least i such that t^(2^i) = 1
+			int i = 0;
+			System.arraycopy(t, 0, square, 0, k);
+
+			while (!equals(square, one)) {
+				multiply(square, square, square);
+				i++;
+			}
+
+			final int[] b = c;
+			for (int j = 0; j < m - i - 1; j++)
+				multiply(b, b, b);
+
+			m = i;
+			multiply(b, b, square);
+			c = square.clone();
+			multiply(t, c, t);
+			multiply(r, b, r);
+		}
+
+		return fromMontgomery(r);
+	}
+
+	/**
+	 * Returns the x from 0 to the product of moduli - 1 such that x &equiv;
+	 * residues[i] (mod moduli[i]) for every i, recombining one modulus at a time by
+	 * Garner's method.
+	 *
+	 * @param residues
+	 * @param moduli   which must be positive and pairwise coprime
+	 * @return the solution of the congruences
+	 * @throws ArithmeticException if any two of moduli are not coprime
+	 * @throws IllegalArgumentException if the arrays differ in length
+	 */
+	public static BigInteger crt(final BigInteger[] residues, final BigInteger[] moduli) {
+
+		if (residues.length != moduli.length)
+			throw new IllegalArgumentException("Mismatched residues and moduli: " + residues.length + " and "
+					+ moduli.length);
+
+		BigInteger x = ZERO;
+		BigInteger product = ONE;
+
+		for (int i = 0; i < moduli.length; i++) {
+
+			final BigInteger[] gcd = IntegerUtils.gcdExtended(product.mod(moduli[i]), moduli[i]);
+
+			if (!gcd[0].equals(ONE))
+				throw new ArithmeticException("Moduli are not coprime: " + moduli[i]);
+
+			// x + product * t satisfies this congruence as well as every previous one.
+			final BigInteger t = residues[i].subtract(x).multiply(gcd[1]).mod(moduli[i]);
+
+			x = x.add(product.multiply(t));
+			product = product.multiply(moduli[i]);
+		}
+
+		return x;
+	}
+
+	/**
+	 * Returns the k words of a, which is below 2<sup>32k</sup>.
+	 */
+	private int[] toWords(final BigInteger a) {
+
+		final int[] words = new int[k];
+		final byte[] bytes = a.toByteArray();
+
+		for (int i = 0; i < bytes.length && i < 4 * k; i++)
+			words[i >>> 2] |= (bytes[bytes.length - 1 - i] & 0xFF) << 8 * (i & 3);
+
+		return words;
+	}
+
+	private BigInteger toBigInteger(final int[] words) {
+
+		final byte[] bytes = new byte[4 * k];
+
+		for (int i = 0; i < bytes.length; i++)
+			bytes[bytes.length - 1 - i] = (byte) (words[i >>> 2] >>> 8 * (i & 3));
+
+		return new BigInteger(1, bytes);
+	}
+
+	/**
+	 * Compares the low k words of a and b as unsigned numbers.
+	 */
+	private int compare(final int[] a, final int[] b) {
+
+		for (int j = k - 1; j >= 0; j--)
+			if (a[j] != b[j])
+				return Integer.compareUnsigned(a[j], b[j]);
+
+		return 0;
+	}
+
+	/**
+	 * Stores the low words of a - b in result, returning the borrow out of the top
+	 * word.
+	 */
+	private static int subtract(final int[] a, final int[] b, final int[] result, final int k) {
+
+		long borrow = 0;
+
+		for (int j = 0; j < k; j++) {
+			final long difference = (a[j] & MASK) - (b[j] & MASK) - borrow;
+			result[j] = (int) difference;
+			borrow = difference >>> 63;
+		}
+
+		return (int) borrow;
+	}
+}
@@ -0,0 +1,141 @@
+package soluturus.calculations;
+
+import java.util.stream.IntStream;
+
+/**
+ * Sieves the values of a multiplicative function over a range of positive
+ * integers, given its values at prime powers.
+ * <p>
+ * The range is split into segments of {@value #SEGMENT_SIZE} integers which
+ * are sieved in parallel. Within a segment, every prime up to the square root
+ * of the range divides itself out of each of its multiples, and the function
+ * at the resulting prime power is multiplied into the value there. What remains
+ * of each integer afterwards is either 1 or a single prime above the square
+ * root. Each integer is therefore visited once per distinct prime factor, as
+ * with a linear sieve, but without a table reaching back to 1 for ranges which
+ * start far from it. Base primes beyond {@value #SHARED_BASE_LIMIT} are sieved
+ * in chunks as each segment reaches them, so memory stays bounded however
+ * large the range's square root.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class MultiplicativeSieve {
+
+	private static final int SEGMENT_SIZE = 1 << 16;
+
+	/**
+	 * Base primes up to this are sieved once and shared by every segment. Larger
+	 * ones are sieved by each segment a chunk at a time, so that ranges far from 1
+	 * never hold every prime up to their square root at once.
+	 */
+	private static final long SHARED_BASE_LIMIT = 1 << 20;
+
+	/**
+	 * A multiplicative function, given by its value at each prime power.
+	 */
+	@FunctionalInterface
+	interface PrimePowerFunction {
+
+		/**
+		 * Returns the value of this function at p<sup>e</sup>, which is power.
+		 */
+		long apply(long p, int e, long power);
+	}
+
+	/**
+	 * Receives the values of one segment, which begins at the given offset into
+	 * the range.
+	 */
+	@FunctionalInterface
+	interface SegmentConsumer {
+		void accept(int offset, long[] values, int length);
+	}
+
+	private MultiplicativeSieve() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the length of [lo, hi), which must be a range of positive integers
+	 * which fits in an array.
+	 */
+	static int length(final long lo, final long hi) {
+
+		if (lo < 1 || hi < lo || hi - lo > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Illegal range: [" + lo + ", " + hi + ")");
+
+		return (int) (hi - lo);
+	}
+
+	/**
+	 * Sieves f over [lo, hi), which has already been checked by
+	 * {@link #length(long, long) length}, passing each segment to out.
+	 *
+	 * @throws ArithmeticException if any value overflows a long
+	 */
+	static void sieve(final long lo, final long hi, final PrimePowerFunction f, final SegmentConsumer out) {
+
+		if (hi == lo)
+			return;
+
+		final long root = PrimitiveMath.isqrt(hi - 1);
+
+		// Every prime up to √root, which sieves the larger base primes, is shared.
+		final long[] shared = PrimeSieve.segment(0, Math.min(root, SHARED_BASE_LIMIT) + 1, new long[0], 0);
+		final int segments = (int) ((hi - lo + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+
+		IntStream.range(0, segments).parallel().forEach(s -> {
+
+			final long a = lo + (long) s * SEGMENT_SIZE;
+			final int length = (int) Math.min(SEGMENT_SIZE, hi - a);
+
+			final long[] rest = new long[length];
+			final long[] values = new long[length];
+
+			for (int i = 0; i < length; i++) {
+				rest[i] = a + i;
+				values[i] = 1;
+			}
+
+			for (long p : shared)
+				divideOut(p, a, rest, values, f);
+
+			for (long c = SHARED_BASE_LIMIT + 1; c <= root; c += PrimeSieve.SEGMENT_SIZE)
+				for (long p : PrimeSieve.segment(c, Math.min(root + 1, c + PrimeSieve.SEGMENT_SIZE), shared,
+						shared.length))
+					divideOut(p, a, rest, values, f);
+
+			for (int i = 0; i < length; i++)
+				if (rest[i] != 1)
+					values[i] = Math.multiplyExact(values[i], f.apply(rest[i], 1, rest[i]));
+
+			out.accept(s * SEGMENT_SIZE, values, length);
+		});
+	}
+
+	/**
+	 * Divides p out of each of its multiples in the segment starting at a, and
+	 * multiplies f at the prime power found into the value there.
+	 */
+	private static void divideOut(final long p, final long a, final long[] rest, final long[] values,
+			final PrimePowerFunction f) {
+
+		// Offsets rather than the multiples themselves, which may overflow near
+		// Long.MAX_VALUE.
+		for (long offset = Math.floorMod(-a, p); offset < rest.length; offset += p) {
+
+			final int i = (int) offset;
+			int e = 0;
+			long power = 1;
+
+			do {
+				rest[i] /= p;
+				power *= p;
+				e++;
+			} while (rest[i] % p == 0);
+
+			values[i] = Math.multiplyExact(values[i], f.apply(p, e, power));
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package soluturus.calculations;
+
+import java.math.BigInteger;
+
+/**
+ * The result of factoring an integer with a bounded amount of work, as returned
+ * by {@link IntegerUtils#factorWithBudget(BigInteger, long) factorWithBudget}.
+ * <p>
+ * The integer is the value of factored times cofactor. The cofactor has no
+ * prime factors below {@value Factorizer#TRIAL_LIMIT} and is either 1, if the
+ * integer was factored completely, or a product of composites which could not
+ * be split within the budget.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public record PartialFactorization(Factorization factored, BigInteger cofactor) {
+
+	/**
+	 * Returns whether the integer was factored completely.
+	 *
+	 * @return whether the cofactor is 1
+	 */
+	public boolean isComplete() {
+		return cofactor.equals(BigInteger.ONE);
+	}
+}
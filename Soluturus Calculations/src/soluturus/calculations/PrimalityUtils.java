@@ -0,0 +1,360 @@
+package soluturus.calculations;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.TWO;
+
+import java.math.BigInteger;
+
+/**
+ * Defines static methods which determine whether a number is prime without
+ * enumerating the primes below it.
+ * <p>
+ * Numbers which fit within a <code>long</code> are tested with the Miller-Rabin
+ * test using a set of bases which is deterministic for every number below
+ * 2<sup>64</sup>, performing all modular multiplications in Montgomery form
+ * through {@link Math#multiplyHigh(long, long) multiplyHigh}. Larger numbers
+ * are tested with the Baillie-PSW test, which has no known counterexample.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class PrimalityUtils {
+
+	/**
+	 * Bases for which the Miller-Rabin test is deterministic below 2<sup>64</sup>,
+	 * found by Jim Sinclair.
+	 */
+	private static final long[] BASES = { 2, 325, 9375, 28178, 450775, 9780504, 1795265022 };
+
+	private static final long[] SMALL_PRIMES = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47 };
+
+	/**
+	 * The product of {@link #SMALL_PRIMES}, which is the largest primorial that
+	 * fits within a long.
+	 */
+	private static final BigInteger SMALL_PRIMORIAL = BigInteger.valueOf(614889782588491410L);
+
+	private PrimalityUtils() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns whether n is prime.
+	 * <p>
+	 * This method is deterministic for every long.
+	 *
+	 * @param n
+	 * @return whether n is prime
+	 */
+	public static final boolean isPrime(final long n) {
+
+		if (n < 2)
+			return false;
+
+		for (long p : SMALL_PRIMES)
+			if (n % p == 0)
+				return n == p;
+
+		if (n < 47 * 47)
+			return true;
+
+		final Montgomery m = new Montgomery(n);
+
+		for (long base : BASES)
+			if (!m.isStrongProbablePrime(base))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns whether n is prime.
+	 * <p>
+	 * This method is deterministic for every n below 2<sup>64</sup>, and uses the
+	 * Baillie-PSW test above that.
+	 *
+	 * @param n
+	 * @return whether n is prime
+	 */
+	public static final boolean isPrime(final BigInteger n) {
+
+		if (n.bitLength() < Long.SIZE)
+			return isPrime(n.longValue());
+		else if (n.signum() < 0)
+			return false;
+
+		final long residue = n.mod(SMALL_PRIMORIAL).longValue();
+
+		for (long p : SMALL_PRIMES)
+			if (residue % p == 0)
+				return false;
+
+		return isStrongProbablePrime(n, TWO) && isStrongLucasProbablePrime(n);
+	}
+
+	/**
+	 * Returns whether n, which must be odd and greater than base, is a strong
+	 * probable prime to the given base.
+	 */
+	static final boolean isStrongProbablePrime(final BigInteger n, final BigInteger base) {
+
+		final BigInteger nMinusOne = n.subtract(ONE);
+		final int s = nMinusOne.getLowestSetBit();
+
+		BigInteger x = base.modPow(nMinusOne.shiftRight(s), n);
+
+		if (x.equals(ONE) || x.equals(nMinusOne))
+			return true;
+
+		for (int r = 1; r < s; r++) {
+
+			x = x.multiply(x).mod(n);
+
+			if (x.equals(nMinusOne))
+				return true;
+			else if (x.equals(ONE))
+				return false;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns whether n, which must be odd and have no small prime factors, is a
+	 * strong Lucas probable prime using the parameters chosen by Selfridge's
+	 * method A.
+	 */
+	static final boolean isStrongLucasProbablePrime(final BigInteger n) {
+
+		// Selfridge's search for D never ends for perfect squares.
+		final BigInteger root = n.sqrt();
+		if (root.multiply(root).equals(n))
+			return false;
+
+		long d = 5;
+
+		while (jacobi(BigInteger.valueOf(d), n) != -1)
+			d = d > 0 ? -d - 2 : -d + 2;
+
+		final BigInteger q = BigInteger.valueOf((1 - d) / 4);
+
+		final BigInteger nPlusOne = n.add(ONE);
+		final int s = nPlusOne.getLowestSetBit();
+		final BigInteger k = nPlusOne.shiftRight(s);
+
+		// Every term is kept in Montgomery form, so no step divides by n.
+		final ModularContext m = new ModularContext(n);
+		final int[] montD = m.toMontgomery(BigInteger.valueOf(d));
+		final int[] montQ = m.toMontgomery(q);
+		final int[] t = m.newElement();
+
+		// P = 1, so U_1 = 1 and V_1 = P = 1.
+		final int[] u = m.one();
+		final int[] v = m.one();
+		final int[] qk = montQ.clone();
+
+		for (int i = k.bitLength() - 2; i >= 0; i--) {
+
+			// U_2j = U_j V_j, V_2j = V_j^2 - 2Q^j
+			m.multiply(u, v, u);
+			m.multiply(v, v, v);
+			m.add(qk, qk, t);
+			m.subtract(v, t, v);
+			m.multiply(qk, qk, qk);
+
+			if (k.testBit(i)) {
+
+				// U_j+1 = (U_j + V_j) / 2, V_j+1 = (D U_j + V_j) / 2
+				m.multiply(montD, u, t);
+				m.add(t, v, t);
+				m.add(u, v, u);
+				m.half(u, u);
+				m.half(t, v);
+				m.multiply(qk, montQ, qk);
+			}
+		}
+
+		if (m.isZero(u) || m.isZero(v))
+			return true;
+
+		for (int r = 1; r < s; r++) {
+
+			m.multiply(v, v, v);
+			m.add(qk, qk, t);
+			m.subtract(v, t, v);
+
+			if (m.isZero(v))
+				return true;
+
+			m.multiply(qk, qk, qk);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the Jacobi symbol (a / n), where n is odd and positive.
+	 *
+	 * @param a
+	 * @param n
+	 * @return (a / n)
+	 */
+	public static final int jacobi(BigInteger a, BigInteger n) {
+
+		if (n.signum() < 1 || !n.testBit(0))
+			throw new IllegalArgumentException("Illegal Jacobi symbol denominator: " + n);
+
+		a = a.mod(n);
+		int result = 1;
+
+		while (a.signum() != 0) {
+
+			final int twos = a.getLowestSetBit();
+			a = a.shiftRight(twos);
+
+			final int nMod8 = n.intValue() & 7;
+
+			if ((twos & 1) != 0 && (nMod8 == 3 || nMod8 == 5))
+				result = -result;
+
+			if ((a.intValue() & 3) == 3 && (nMod8 & 3) == 3)
+				result = -result;
+
+			final BigInteger t = a;
+			a = n.mod(t);
+			n = t;
+		}
+
+		return n.equals(ONE) ? result : 0;
+	}
+
+	/**
+	 * Modular arithmetic in Montgomery form for a fixed odd modulus below
+	 * 2<sup>63</sup>, with R = 2<sup>64</sup>.
+	 */
+	static final class Montgomery {
+
+		final long n;
+		private final long negInv;
+		private final long one;
+		private final long r2;
+
+		Montgomery(final long n) {
+
+			this.n = n;
+
+			// Newton's iteration doubles the correct low bits of the inverse of n
+			// each step, starting with 3 correct bits from n itself.
+			long inv = n;
+			for (int i = 0; i < 5; i++)
+				inv *= 2 - n * inv;
+			negInv = -inv;
+
+			// 2^64 mod n, which is never 0 for odd n.
+			one = Long.remainderUnsigned(-1L, n) + 1;
+
+			long r = one;
+			for (int i = 0; i < 64; i++) {
+				r <<= 1;
+				if (Long.compareUnsigned(r, n) >= 0)
+					r -= n;
+			}
+			r2 = r;
+		}
+
+		/**
+		 * Returns the Montgomery form of a, where 0 &le; a.
+		 */
+		long toMontgomery(final long a) {
+			return multiply(a % n, r2);
+		}
+
+		long fromMontgomery(final long a) {
+			return multiply(a, 1);
+		}
+
+		/**
+		 * Returns the Montgomery form of 1.
+		 */
+		long one() {
+			return one;
+		}
+
+		/**
+		 * Returns abR<sup>-1</sup> mod n, where 0 &le; a, b &lt; n.
+		 */
+		long multiply(final long a, final long b) {
+
+			final long lo = a * b;
+			final long hi = unsignedMultiplyHigh(a, b);
+			final long m = lo * negInv;
+
+			// lo + the low word of mn is 0, carrying 1 unless lo is already 0.
+			long t = hi + unsignedMultiplyHigh(m, n) + (lo != 0 ? 1 : 0);
+
+			if (Long.compareUnsigned(t, n) >= 0)
+				t -= n;
+
+			return t;
+		}
+
+		long add(final long a, final long b) {
+			final long t = a + b;
+			return Long.compareUnsigned(t, n) >= 0 ? t - n : t;
+		}
+
+		long subtract(final long a, final long b) {
+			return a >= b ? a - b : a - b + n;
+		}
+
+		long pow(long base, long exponent) {
+
+			long result = one;
+
+			while (exponent != 0) {
+				if ((exponent & 1) != 0)
+					result = multiply(result, base);
+				base = multiply(base, base);
+				exponent >>>= 1;
+			}
+
+			return result;
+		}
+
+		boolean isStrongProbablePrime(final long base) {
+
+			final long a = base % n;
+
+			if (a == 0)
+				return true;
+
+			final long nMinusOne = n - 1;
+			final int s = Long.numberOfTrailingZeros(nMinusOne);
+			final long minusOne = n - one;
+
+			long x = pow(toMontgomery(a), nMinusOne >>> s);
+
+			if (x == one || x == minusOne)
+				return true;
+
+			for (int r = 1; r < s; r++) {
+
+				x = multiply(x, x);
+
+				if (x == minusOne)
+					return true;
+				else if (x == one)
+					return false;
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the high 64 bits of the unsigned 128 bit product of a and b.
+	 */
+	static final long unsignedMultiplyHigh(final long a, final long b) {
+		return Math.multiplyHigh(a, b) + (a >> 63 & b) + (b >> 63 & a);
+	}
+}
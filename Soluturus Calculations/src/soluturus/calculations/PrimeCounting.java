@@ -0,0 +1,354 @@
+package soluturus.calculations;
+
+import java.util.Arrays;
+
+/**
+ * Computes the prime counting function π(x) and the n<sup>th</sup> prime
+ * without enumerating every prime below them, using the Meissel-Lehmer method.
+ * <p>
+ * With a = π(∛x) and b = π(√x),
+ * <p>
+ * π(x) = φ(x, a) + a - 1 - Σ<sub>a &lt; i &le; b</sub> (π(x / p<sub>i</sub>) -
+ * i + 1),
+ * <p>
+ * where φ(x, a) counts the integers up to x which are not divisible by any of
+ * the first a primes. Every π(y) this needs has y &le; x<sup>2/3</sup>. Those
+ * below {@value #TABLE_LIMIT} are answered from a compact sieved table, which
+ * also allows φ(y, a) to be computed directly once y &lt;
+ * p<sub>a</sub><sup>3</sup>. The rest only occur as π(x / p<sub>i</sub>), which
+ * grow as i falls, so they are counted by sieving upwards from the table one
+ * segment at a time. The whole method takes roughly O(x<sup>2/3</sup>) time,
+ * and x<sup>2/3</sup> / 10 bytes of memory for the table, up to about 100MB.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class PrimeCounting {
+
+	/**
+	 * The amount of leading primes whose φ is read from {@link #PHI_TABLE}.
+	 */
+	private static final int WHEEL_PRIMES = 7;
+	private static final int WHEEL = 2 * 3 * 5 * 7 * 11 * 13 * 17;
+
+	/**
+	 * Below this, π(x) is read straight from a sieved table, which ensures that
+	 * π(∛x) always exceeds {@value #WHEEL_PRIMES} in the Meissel-Lehmer method.
+	 */
+	private static final long SMALL = 1 << 16;
+
+	/**
+	 * The bound of the table of π, which takes 3 bytes for every 32 integers.
+	 */
+	private static final long TABLE_LIMIT = 1L << 30;
+
+	/**
+	 * The largest n for which p<sub>n</sub> fits in a long.
+	 */
+	private static final long MAX_INDEX = 216289611853439384L;
+
+	/**
+	 * The most integers {@link #nth(long) nth} sieves from its estimate.
+	 */
+	private static final long MAX_WALK = 1 << 26;
+
+	/**
+	 * Entry v holds φ(v, {@value #WHEEL_PRIMES}) for 0 &le; v &lt;
+	 * {@value #WHEEL}.
+	 */
+	private static final int[] PHI_TABLE = new int[WHEEL];
+
+	static {
+		final boolean[] divisible = new boolean[WHEEL];
+		for (int p : new int[] { 2, 3, 5, 7, 11, 13, 17 })
+			for (int m = 0; m < WHEEL; m += p)
+				divisible[m] = true;
+
+		for (int v = 1; v < WHEEL; v++)
+			PHI_TABLE[v] = PHI_TABLE[v - 1] + (divisible[v] ? 0 : 1);
+	}
+
+	private static final long PHI_WHEEL = PHI_TABLE[WHEEL - 1];
+
+	// Bit j of the table is set if 2j + 1 is not prime.
+	private final long[] composite;
+	private final int[] prefix;
+	private final long limit;
+
+	// The primes up to the root given to the constructor, where primes[i] is the
+	// i-th prime.
+	private final long[] primes;
+
+	/**
+	 * Sieves the table of π(v) for every v below limit, along with every prime up
+	 * to root, which is below limit.
+	 */
+	private PrimeCounting(final long limit, final long root) {
+
+		this.limit = limit;
+
+		final int bits = Math.toIntExact((limit + 1) >>> 1);
+		composite = new long[(bits + 63) >>> 6];
+		composite[0] = 1;
+
+		final long[] base = PrimeSieve.segment(0, (long) Math.sqrt((double) limit) + 2, new long[0], 0);
+		final long[] next = new long[base.length];
+
+		for (int i = 1; i < base.length; i++)
+			next[i] = base[i] * base[i] >>> 1;
+
+		// Marks each odd composite, PrimeSieve.SEGMENT_SIZE numbers at a time so
+		// that the marked words stay cached.
+		for (long lo = 0; lo < bits; lo += PrimeSieve.SEGMENT_SIZE >>> 1) {
+
+			final long hi = Math.min(bits, lo + (PrimeSieve.SEGMENT_SIZE >>> 1));
+
+			for (int i = 1; i < base.length; i++) {
+
+				final long p = base[i];
+				long j = next[i];
+
+				for (; j < hi; j += p)
+					composite[(int) (j >>> 6)] |= 1L << j;
+
+				next[i] = j;
+			}
+		}
+
+		if ((bits & 63) != 0)
+			composite[composite.length - 1] |= -1L << bits;
+
+		prefix = new int[composite.length];
+		for (int w = 1; w < composite.length; w++)
+			prefix[w] = prefix[w - 1] + Long.bitCount(~composite[w - 1]);
+
+		primes = new long[Math.toIntExact(pi(root)) + 1];
+
+		int i = 1;
+		if (primes.length > 1)
+			primes[i++] = 2;
+
+		for (int w = 0; i < primes.length; w++)
+			for (long word = ~composite[w]; word != 0 && i < primes.length; word &= word - 1)
+				primes[i++] = 2L * ((w << 6) + Long.numberOfTrailingZeros(word)) + 1;
+	}
+
+	/**
+	 * Returns π(v) from the table, where v &lt; limit.
+	 */
+	private long pi(final long v) {
+
+		if (v < 2)
+			return 0;
+
+		// The odd numbers up to v are represented by bits 0 through j.
+		final long j = (v - 1) >>> 1;
+		final int w = (int) (j >>> 6);
+		final long mask = -1L >>> 63 - (j & 63);
+
+		return 1 + prefix[w] + Long.bitCount(~composite[w] & mask);
+	}
+
+	/**
+	 * Returns φ(x, a), the amount of integers in [1, x] which are not divisible by
+	 * any of the first a primes.
+	 */
+	private long phi(final long x, final int a) {
+
+		if (a == WHEEL_PRIMES)
+			return phiWheel(x);
+
+		final long p = primes[a];
+
+		if (x < p)
+			return x < 1 ? 0 : 1;
+		else if (x < limit) {
+
+			if (x / p < p)
+				return pi(x) - a + 1;
+			else if (x / p / p < p) {
+
+				// Every integer counted is 1, a prime above p, or a product of two
+				// primes above p.
+				long result = pi(x) - a + 1;
+				final long b = pi(PrimitiveMath.isqrt(x));
+
+				for (int j = a + 1; j <= b; j++)
+					result += pi(x / primes[j]) - j + 1;
+
+				return result;
+			}
+		}
+
+		long result = phiWheel(x);
+
+		for (int i = WHEEL_PRIMES + 1; i <= a; i++) {
+
+			final long y = x / primes[i];
+
+			// φ(y, i - 1) is 1 for every remaining i once y < p_i.
+			if (y < primes[i]) {
+				result -= a - i + 1;
+				break;
+			}
+
+			result -= phi(y, i - 1);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns φ(x, {@value #WHEEL_PRIMES}).
+	 */
+	private static long phiWheel(final long x) {
+		return x / WHEEL * PHI_WHEEL + PHI_TABLE[(int) (x % WHEEL)];
+	}
+
+	/**
+	 * Returns π(x), the amount of primes no greater than x.
+	 *
+	 * @param x
+	 * @return π(x)
+	 */
+	static long count(final long x) {
+
+		if (x < 2)
+			return 0;
+
+		final long root = PrimitiveMath.isqrt(x);
+
+		if (x < SMALL)
+			return new PrimeCounting(x + 1, root).pi(x);
+
+		final long y = PrimitiveMath.icbrt(x);
+		final long limit = Math.min(x / y + 1, TABLE_LIMIT);
+
+		// The primes must reach √(x / y) to sieve beyond the table.
+		final PrimeCounting table = new PrimeCounting(limit,
+				Math.max(PrimitiveMath.isqrt(x / y) + 1, PrimitiveMath.isqrt(limit - 1)));
+
+		final int a = (int) table.pi(y);
+
+		return table.phi(x, a) + a - 1 - table.sumAbove(x, y, a, root);
+	}
+
+	/**
+	 * Returns Σ<sub>a &lt; i &le; b</sub> (π(x / p<sub>i</sub>) - i + 1), where
+	 * p<sub>a</sub> &le; y &lt; p<sub>a + 1</sub> and b = π(root).
+	 * <p>
+	 * The primes in (y, root] are sieved in descending order, so x / p ascends and
+	 * each π(x / p) beyond the table continues the count of the previous one.
+	 */
+	private long sumAbove(final long x, final long y, final int a, final long root) {
+
+		final long[] base = Arrays.copyOfRange(primes, 1, primes.length);
+		final long end = x / y + 1;
+
+		long sum = 0;
+		long count = 0;
+
+		// The primes in [lo, hi), of which the first cursor are at most the last
+		// x / p, and the count of the primes below lo.
+		long[] segment = new long[0];
+		int cursor = 0;
+		long lo = limit;
+		long hi = limit;
+		long below = pi(limit - 1);
+
+		for (long top = root + 1; top > y + 1; top -= PrimeSieve.SEGMENT_SIZE) {
+
+			final long[] ps = PrimeSieve.segment(Math.max(y + 1, top - PrimeSieve.SEGMENT_SIZE), top, base,
+					base.length);
+
+			for (int k = ps.length - 1; k >= 0; k--) {
+
+				final long v = x / ps[k];
+				count++;
+
+				if (v < limit) {
+					sum += pi(v);
+					continue;
+				}
+
+				while (v >= hi) {
+					below += segment.length;
+					lo = hi;
+					hi = Math.min(end, lo + PrimeSieve.SEGMENT_SIZE);
+					segment = PrimeSieve.segment(lo, hi, base, base.length);
+					cursor = 0;
+				}
+
+				while (cursor < segment.length && segment[cursor] <= v)
+					cursor++;
+
+				sum += below + cursor;
+			}
+		}
+
+		final long b = a + count;
+
+		return sum - (b * (b - 1) / 2 - (long) a * (a - 1) / 2);
+	}
+
+	/**
+	 * Returns the n<sup>th</sup> prime, where the first prime is 2.
+	 * <p>
+	 * Estimates the prime from the asymptotic expansion of p<sub>n</sub>, counts
+	 * the primes up to the estimate, and sieves from it to the exact prime. While
+	 * that would sieve more than {@value #MAX_WALK} integers, the estimate is
+	 * first moved by the remaining count times the average gap between primes
+	 * there, and counted again.
+	 *
+	 * @param n
+	 * @return p<sub>n</sub>
+	 * @throws IllegalArgumentException if n is not positive or p<sub>n</sub> does
+	 *                                  not fit in a long
+	 */
+	static long nth(final long n) {
+
+		if (n < 1 || n > MAX_INDEX)
+			throw new IllegalArgumentException("Illegal prime index: " + n);
+		else if (n < 6)
+			return new long[] { 2, 3, 5, 7, 11 }[(int) n - 1];
+
+		final double ln = Math.log(n);
+		final double lnln = Math.log(ln);
+		// The expansion is only asymptotic, and falls below 2 for the smallest n.
+		long estimate = Math.max(2,
+				(long) (n * (ln + lnln - 1 + (lnln - 2) / ln - (lnln * lnln - 6 * lnln + 11) / (2 * ln * ln))));
+		long count = count(estimate);
+
+		while (Math.abs(n - count) * Math.log(estimate) > MAX_WALK) {
+			estimate = (long) (estimate + (n - count) * Math.log(estimate));
+			count = count(estimate);
+		}
+
+		final long[] base = PrimeSieve.segment(0, 2 * PrimitiveMath.isqrt(estimate / 2) + 3, new long[0], 0);
+
+		if (count >= n) {
+
+			// π(p) = count for the largest prime p up to the estimate, so walks back.
+			for (long hi = estimate + 1;; hi -= PrimeSieve.SEGMENT_SIZE) {
+
+				final long[] segment = PrimeSieve.segment(hi - PrimeSieve.SEGMENT_SIZE, hi, base, base.length);
+
+				if (count - segment.length < n)
+					return segment[(int) (n - (count - segment.length) - 1)];
+
+				count -= segment.length;
+			}
+		} else {
+
+			for (long lo = estimate + 1;; lo += PrimeSieve.SEGMENT_SIZE) {
+
+				final long[] segment = PrimeSieve.segment(lo, lo + PrimeSieve.SEGMENT_SIZE, base, base.length);
+
+				if (count + segment.length >= n)
+					return segment[(int) (n - count - 1)];
+
+				count += segment.length;
+			}
+		}
+	}
+}
@@ -2,20 +2,34 @@ package soluturus.calculations;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Object used to find the next prime based on the previous known primes.
  * <p>
- * Stores an ArrayList of all previous known primes, which is uses to check
- * divisibility of candidate primes.
+ * Stores a table of all previous known primes, which is extended one segment
+ * at a time by a {@link PrimeSieve segmented Sieve of Eratosthenes}. Each
+ * sieved segment becomes an immutable chunk of the table, and the table is
+ * published through a single volatile {@link Snapshot}, so any amount of
+ * threads may read it without locking while only the thread extending it
+ * synchronizes.
  * <p>
- * The next function works in O(√(n) time.
- * 
+ * A PrimeFinder may also start from a pre-built table written by
+ * {@link #writeTable(Path, long) writeTable}, which is memory-mapped read-only
+ * so that it costs almost no heap and can be shared by several processes.
+ * <p>
+ * Filling the table up to n works in O(n log log n) time.
+ *
  * @author Miles K Bertrand
  *
  */
@@ -23,11 +37,42 @@ public final class PrimeFinder implements Cloneable, Iterable<BigInteger>, Seria
 
 	public static final PrimeFinder DEFAULT_FINDER = new PrimeFinder();
 
-	private static final long serialVersionUID = 1307057860368995251L;
+	private static final long serialVersionUID = -1746213170956020154L;
+
+	/**
+	 * Immutable view of the sieved chunks of the table.
+	 * <p>
+	 * Chunk k holds the primes within [start + k * SEGMENT_SIZE, start + (k + 1) *
+	 * SEGMENT_SIZE). The chunk array is shared between successive snapshots, which
+	 * only ever write to indices at or beyond the count of the snapshot they
+	 * replace.
+	 */
+	private static final class Snapshot {
+
+		final long[][] chunks;
+		final int count;
+		final long limit;
+
+		Snapshot(final long[][] chunks, final int count, final long limit) {
+			this.chunks = chunks;
+			this.count = count;
+			this.limit = limit;
+		}
+	}
 
 	private final class Itr implements Iterator<BigInteger> {
 
-		private int cursor = -1;
+		private long last;
+		private int chunk;
+		private int index;
+
+		/**
+		 * Creates an iterator over the primes greater than after.
+		 */
+		Itr(final long after) {
+			last = after;
+			chunk = -1;
+		}
 
 		@Override
 		public boolean hasNext() {
@@ -36,7 +81,40 @@ public final class PrimeFinder implements Cloneable, Iterable<BigInteger>, Seria
 
 		@Override
 		public BigInteger next() {
-			return ++cursor >= primes.size() ? PrimeFinder.this.next() : primes.get(cursor);
+			return BigInteger.valueOf(nextPrime());
+		}
+
+		long nextPrime() {
+
+			if (table != null && last < table.limit()) {
+
+				final long p = table.nextPrime(last);
+
+				if (p > 0)
+					return last = p;
+
+				last = table.limit();
+			}
+
+			if (chunk < 0) {
+
+				final long value = Math.max(last + 1, start);
+
+				chunk = chunkOf(value);
+				index = Arrays.binarySearch(require(chunk).chunks[chunk], value);
+
+				if (index < 0)
+					index = -index - 1;
+			}
+
+			long[] primes = require(chunk).chunks[chunk];
+
+			while (index >= primes.length) {
+				index = 0;
+				primes = require(++chunk).chunks[chunk];
+			}
+
+			return last = primes[index++];
 		}
 
 		@Override
@@ -45,62 +123,279 @@ public final class PrimeFinder implements Cloneable, Iterable<BigInteger>, Seria
 		}
 	}
 
-	private BigInteger cursor;
-	private final ArrayList<BigInteger> primes;
+	private transient MappedPrimeTable table;
+	private transient long start;
+	private transient volatile Snapshot snapshot;
+	private transient Object extension;
+	private transient long[] base;
+	private transient long baseLimit;
+	private transient Itr sequence;
+
+	private final String tableFile;
 
 	public PrimeFinder() {
-		cursor = BigInteger.ONE;
-		primes = new ArrayList<BigInteger>();
+		tableFile = null;
+		initialize(null);
 	}
 
-	public synchronized BigInteger next() {
-
-		boolean prime;
+	/**
+	 * Creates a PrimeFinder whose known primes begin with the table within file,
+	 * which must have been written by {@link #writeTable(Path, long) writeTable}.
+	 * <p>
+	 * The table is memory-mapped read-only rather than loaded onto the heap, and
+	 * primes beyond it are sieved as usual.
+	 *
+	 * @param file the file containing the table
+	 * @throws IOException if the file cannot be read or is not a prime table
+	 */
+	public PrimeFinder(final Path file) throws IOException {
+		tableFile = file.toString();
+		initialize(MappedPrimeTable.map(file));
+	}
 
-		do {
+	private void initialize(final MappedPrimeTable table) {
+		this.table = table;
+		start = table == null ? 0 : table.limit();
+		snapshot = new Snapshot(new long[16][], 0, start);
+		extension = new Object();
+		sequence = new Itr(0);
+	}
 
-			prime = true;
-			cursor = cursor.add(BigInteger.ONE);
-			int i = 0;
+	/**
+	 * Writes every prime below limit to file as a compact table which can be
+	 * shared by any amount of {@link #PrimeFinder(Path) PrimeFinders}.
+	 * <p>
+	 * The table stores the primes as a wheel-30 bitset, which takes
+	 * approximately limit / 30 bytes.
+	 *
+	 * @param file  the file to write the table to
+	 * @param limit the exclusive upper bound of the primes within the table,
+	 *              which is rounded up to the table's block size
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeTable(final Path file, final long limit) throws IOException {
+		MappedPrimeTable.write(file, limit);
+	}
 
-			while (prime && i < primes.size() && primes.get(i).pow(2).compareTo(cursor) != 1)
-				if (cursor.mod(primes.get(i++)).equals(BigInteger.ZERO))
-					prime = false;
+	public synchronized BigInteger next() {
+		return BigInteger.valueOf(sequence.nextPrime());
+	}
 
-		} while (!prime);
+	public synchronized BigInteger current() {
 
-		primes.add(cursor);
-		return cursor;
-	}
+		if (sequence.last == 0)
+			throw new NoSuchElementException();
 
-	public BigInteger current() {
-		return primes.get(primes.size() - 1);
+		return BigInteger.valueOf(sequence.last);
 	}
 
 	public boolean isPrime(BigInteger n) {
+
 		if (n.equals(BigInteger.ONE))
 			return true;
-		else if (n.compareTo(cursor) < 1)
-			return primes.contains(n);
+		else if (n.signum() < 1)
+			return false;
+		else if (n.bitLength() >= Long.SIZE)
+			return PrimalityUtils.isPrime(n);
+
+		final long value = n.longValue();
+		final Snapshot s = snapshot;
 
-		while (n.compareTo(cursor) > -1)
-			next();
+		if (value < start)
+			return table.isPrime(value);
+		else if (value >= s.limit)
+			// Numbers beyond the table are tested directly rather than sieving up to
+			// them.
+			return PrimalityUtils.isPrime(value);
 
-		return primes.get(primes.size() - 2).equals(n);
+		final int chunk = chunkOf(value);
+		return Arrays.binarySearch(s.chunks[chunk], value) >= 0;
+	}
+
+	/**
+	 * Returns π(x), the amount of primes no greater than x.
+	 * <p>
+	 * If x is within the known primes, they are counted directly. Otherwise, this
+	 * uses the Meissel-Lehmer method, which takes roughly O(x<sup>2/3</sup>) time
+	 * and does not extend the known primes.
+	 *
+	 * @param x
+	 * @return π(x)
+	 */
+	public long primeCount(final long x) {
+
+		final Snapshot s = snapshot;
+
+		if (x < 2)
+			return 0;
+		else if (x < start)
+			return table.countTo(x);
+		else if (x >= s.limit)
+			return PrimeCounting.count(x);
+
+		long count = table == null ? 0 : table.count();
+		final int chunk = chunkOf(x);
+
+		for (int i = 0; i < chunk; i++)
+			count += s.chunks[i].length;
+
+		final int index = Arrays.binarySearch(s.chunks[chunk], x);
+
+		return count + (index >= 0 ? index + 1 : -index - 1);
+	}
+
+	/**
+	 * Returns the n<sup>th</sup> prime, where the first prime is 2.
+	 * <p>
+	 * If the prime is within the known primes, it is read directly. Otherwise, its
+	 * position is estimated and corrected with {@link #primeCount(long)
+	 * primeCount}, which does not extend the known primes.
+	 *
+	 * @param n
+	 * @return the n<sup>th</sup> prime
+	 * @throws IllegalArgumentException if n is not positive, or so large that the
+	 *                                  n<sup>th</sup> prime does not fit in a long
+	 */
+	public long nthPrime(final long n) {
+
+		if (n < 1)
+			throw new IllegalArgumentException("Illegal prime index: " + n);
+
+		final Snapshot s = snapshot;
+		long remaining = n;
+
+		if (table != null) {
+
+			if (remaining <= table.count())
+				return table.select(remaining);
+
+			remaining -= table.count();
+		}
+
+		for (int i = 0; i < s.count; i++) {
+
+			if (remaining <= s.chunks[i].length)
+				return s.chunks[i][(int) remaining - 1];
+
+			remaining -= s.chunks[i].length;
+		}
+
+		return PrimeCounting.nth(n);
+	}
+
+	/**
+	 * Returns a stream of every prime within [lo, hi) in ascending order.
+	 * <p>
+	 * The range is sieved one segment at a time as the stream is consumed, and
+	 * does not extend the known primes. The returned stream is sequential; when
+	 * made {@link LongStream#parallel() parallel}, the range is split into whole
+	 * segments which are each sieved on their own fork-join worker.
+	 *
+	 * @param lo the inclusive lower bound of the range
+	 * @param hi the exclusive upper bound of the range
+	 * @return the primes within [lo, hi)
+	 */
+	public LongStream primesInRange(final long lo, final long hi) {
+		return StreamSupport.longStream(new PrimeSpliterator(Math.max(lo, 0), Math.max(hi, 0)), false);
 	}
 
-	@SuppressWarnings("unchecked")
 	public ArrayList<BigInteger> getPrimes() {
-		return (ArrayList<BigInteger>) primes.clone();
+
+		final Snapshot s = snapshot;
+		final ArrayList<BigInteger> list = new ArrayList<>();
+
+		if (table != null)
+			for (long p = table.nextPrime(0); p > 0; p = table.nextPrime(p))
+				list.add(BigInteger.valueOf(p));
+
+		for (int i = 0; i < s.count; i++)
+			for (long p : s.chunks[i])
+				list.add(BigInteger.valueOf(p));
+
+		return list;
+	}
+
+	private int chunkOf(final long value) {
+		return Math.toIntExact((value - start) / PrimeSieve.SEGMENT_SIZE);
+	}
+
+	/**
+	 * Returns a snapshot which contains the given chunk, sieving new chunks if it
+	 * has not been reached yet.
+	 */
+	private Snapshot require(final int chunk) {
+
+		Snapshot s = snapshot;
+
+		if (chunk < s.count)
+			return s;
+
+		synchronized (extension) {
+			while (chunk >= (s = snapshot).count)
+				sieve(s);
+		}
+
+		return s;
+	}
+
+	/**
+	 * Appends every prime within the next unsieved segment to the table. Must only
+	 * be called while holding the extension lock.
+	 */
+	private void sieve(final Snapshot s) {
+
+		final long hi = s.limit + PrimeSieve.SEGMENT_SIZE;
+		final long root = (long) Math.sqrt((double) hi) + 1;
+
+		// The primes up to √(hi) are kept separately as a flat array, since the
+		// table may be split into chunks or mapped from a file.
+		if (root >= baseLimit)
+			base = PrimeSieve.segment(0, baseLimit = 2 * root, new long[0], 0);
+
+		long[][] chunks = s.chunks;
+
+		if (s.count == chunks.length)
+			chunks = Arrays.copyOf(chunks, 2 * chunks.length);
+
+		chunks[s.count] = PrimeSieve.segment(s.limit, hi, base, base.length);
+		snapshot = new Snapshot(chunks, s.count + 1, hi);
+	}
+
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+
+		final Snapshot s = snapshot;
+		final long last;
+
+		synchronized (this) {
+			last = sequence.last;
+		}
+
+		oos.defaultWriteObject();
+		oos.writeLong(last);
+		oos.writeInt(s.count);
+
+		for (int i = 0; i < s.count; i++)
+			oos.writeObject(s.chunks[i]);
 	}
 
 	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+
 		ois.defaultReadObject();
-		cursor = primes.get(primes.size() - 1);
+		initialize(tableFile == null ? null : MappedPrimeTable.map(Path.of(tableFile)));
+
+		final long last = ois.readLong();
+		final int count = ois.readInt();
+		final long[][] chunks = new long[Math.max(16, count)][];
+
+		for (int i = 0; i < count; i++)
+			chunks[i] = (long[]) ois.readObject();
+
+		snapshot = new Snapshot(chunks, count, start + (long) count * PrimeSieve.SEGMENT_SIZE);
+		sequence = new Itr(last);
 	}
 
 	@Override
 	public Iterator<BigInteger> iterator() {
-		return new Itr();
+		return new Itr(0);
 	}
 }
@@ -0,0 +1,28 @@
+package soluturus.calculations;
+
+import java.math.BigInteger;
+
+/**
+ * A prime together with the exponent to which it divides some integer, as
+ * yielded one at a time by {@link IntegerUtils#factorIterator(BigInteger)
+ * factorIterator}.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public record PrimePower(BigInteger prime, int exponent) {
+
+	/**
+	 * Returns prime<sup>exponent</sup>.
+	 *
+	 * @return the value of this prime power
+	 */
+	public BigInteger value() {
+		return prime.pow(exponent);
+	}
+
+	@Override
+	public String toString() {
+		return exponent == 1 ? prime.toString() : prime + "^" + exponent;
+	}
+}
@@ -0,0 +1,138 @@
+package soluturus.calculations;
+
+/**
+ * Segmented Sieve of Eratosthenes over primitive <code>long</code> ranges.
+ * <p>
+ * Each call sieves a single half-open segment [lo, hi) using a bitset which
+ * only represents the odd numbers of the segment, so a segment of 2<sup>19</sup>
+ * integers fits within 32KB of memory.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class PrimeSieve {
+
+	/**
+	 * The amount of integers sieved at once by callers which walk the number line
+	 * one segment at a time.
+	 */
+	static final int SEGMENT_SIZE = 1 << 19;
+
+	private PrimeSieve() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns every prime within [lo, hi) in ascending order.
+	 * <p>
+	 * The first <code>baseCount</code> elements of <code>base</code> must contain,
+	 * in ascending order, every prime below lo which is no greater than
+	 * √(hi). Primes inside the segment which are needed to sieve it are found
+	 * on the fly.
+	 *
+	 * @param lo        the inclusive lower bound of the segment
+	 * @param hi        the exclusive upper bound of the segment
+	 * @param base      the primes used to sieve the segment
+	 * @param baseCount the amount of usable primes in base
+	 * @return the primes within [lo, hi)
+	 */
+	static long[] segment(final long lo, final long hi, final long[] base, final int baseCount) {
+		return segment(lo, hi, base, baseCount, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns every prime within [lo, hi) in ascending order, where the first
+	 * <code>baseCount</code> elements of <code>base</code> need only contain every
+	 * prime up to <code>baseLimit</code>, which is at least the fourth root of hi.
+	 * <p>
+	 * The sieving primes above baseLimit are themselves sieved from base one
+	 * segment at a time and crossed off as they are found, so they are never all
+	 * held at once.
+	 *
+	 * @param lo        the inclusive lower bound of the segment
+	 * @param hi        the exclusive upper bound of the segment
+	 * @param base      the smaller primes used to sieve the segment
+	 * @param baseCount the amount of usable primes in base
+	 * @param baseLimit the bound up to which base holds every prime
+	 * @return the primes within [lo, hi)
+	 */
+	static long[] segment(long lo, final long hi, final long[] base, final int baseCount, final long baseLimit) {
+
+		lo = Math.max(lo, 2);
+
+		if (hi <= lo)
+			return new long[0];
+
+		// Bit j of the segment represents the odd number first + 2j.
+		final long first = lo | 1;
+		final int bits = hi <= first ? 0 : (int) ((hi - first + 1) >>> 1);
+		final long[] composite = new long[(bits + 63) >>> 6];
+
+		for (int i = 0; i < baseCount; i++) {
+
+			final long p = base[i];
+
+			if (p == 2)
+				continue;
+			else if (p > hi / p)
+				break;
+
+			cross(composite, bits, first, p);
+		}
+
+		final long top = Math.min(PrimitiveMath.isqrt(hi - 1), lo - 1);
+
+		for (long c = Math.min(baseLimit, top) + 1; c <= top; c += SEGMENT_SIZE)
+			for (long p : segment(c, Math.min(top + 1, c + SEGMENT_SIZE), base, baseCount))
+				cross(composite, bits, first, p);
+
+		// Primes inside the segment which are no greater than √(hi) only occur
+		// when the segment starts below √(hi), and must sieve the rest of it.
+		for (int j = 0; j < bits; j++) {
+
+			final long p = first + 2L * j;
+
+			if (p > hi / p)
+				break;
+			else if ((composite[j >>> 6] & 1L << j) == 0)
+				cross(composite, bits, first, p);
+		}
+
+		if ((bits & 63) != 0)
+			composite[composite.length - 1] |= -1L << bits;
+
+		int count = lo == 2 ? 1 : 0;
+
+		for (long word : composite)
+			count += Long.bitCount(~word);
+
+		final long[] primes = new long[count];
+		int cursor = 0;
+
+		if (lo == 2)
+			primes[cursor++] = 2;
+
+		for (int w = 0; w < composite.length; w++)
+			for (long word = ~composite[w]; word != 0; word &= word - 1)
+				primes[cursor++] = first + 2L * ((w << 6) + Long.numberOfTrailingZeros(word));
+
+		return primes;
+	}
+
+	/**
+	 * Marks every odd multiple of p within the segment, starting from p<sup>2</sup>,
+	 * as composite.
+	 */
+	private static void cross(final long[] composite, final int bits, final long first, final long p) {
+
+		// The offset of the first odd multiple from first, which is odd, so the
+		// multiple itself is never formed and cannot overflow near Long.MAX_VALUE.
+		long offset = p * p >= first ? p * p - first : Math.floorMod(-first, p);
+
+		if ((offset & 1) != 0)
+			offset += p;
+
+		for (long j = offset >>> 1; j < bits; j += p)
+			composite[(int) (j >>> 6)] |= 1L << j;
+	}
+}
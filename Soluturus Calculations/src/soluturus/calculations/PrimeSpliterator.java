@@ -0,0 +1,181 @@
+package soluturus.calculations;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Spliterator over the primes within a range, which sieves the range one
+ * segment at a time.
+ * <p>
+ * Segments are at least {@link PrimeSieve#SEGMENT_SIZE SEGMENT_SIZE} wide, and
+ * widen with √(hi) so that high ranges are not dominated by locating the first
+ * multiple of every sieving prime in each segment.
+ * <p>
+ * Splitting hands off the lower half of the unsieved range, rounded to whole
+ * segments, as the prefix, so each part of a parallel stream sieves its own
+ * segments on its own worker.
+ * <p>
+ * The sieving primes are shared by every part, and are only extended as far as
+ * the square root of the highest segment sieved so far. Those above
+ * {@value #SHARED_BASE_LIMIT} are never stored, but sieved by each segment which
+ * needs them, so a short range near Long.MAX_VALUE does not hold every prime
+ * below 3&times;10<sup>9</sup>.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class PrimeSpliterator implements Spliterator.OfLong {
+
+	private static final long MAX_WIDTH = 1 << 23;
+
+	private static final long SHARED_BASE_LIMIT = 1 << 25;
+
+	/**
+	 * The sieving primes shared by a spliterator and every part split from it.
+	 */
+	private static final class Base {
+
+		private long[] primes = new long[0];
+
+		/**
+		 * The bound below which primes holds every prime.
+		 */
+		private long limit = 0;
+
+		/**
+		 * Returns every prime up to the smaller of root and
+		 * {@value PrimeSpliterator#SHARED_BASE_LIMIT}, first extending them if they
+		 * do not yet reach that far. The returned array may hold more primes.
+		 */
+		synchronized long[] upTo(final long root) {
+
+			final long target = Math.min(root, SHARED_BASE_LIMIT) + 1;
+
+			if (limit < target) {
+
+				// Doubling keeps the amount of extensions logarithmic in the root.
+				final long end = Math.min(SHARED_BASE_LIMIT + 1, Math.max(target, 2 * limit));
+				final long[] more = PrimeSieve.segment(limit, end, primes, primes.length);
+				final long[] grown = Arrays.copyOf(primes, primes.length + more.length);
+
+				System.arraycopy(more, 0, grown, primes.length, more.length);
+				primes = grown;
+				limit = end;
+			}
+
+			return primes;
+		}
+	}
+
+	private final Base base;
+	private final long width;
+	private long lo;
+	private final long hi;
+
+	private long[] buffer;
+	private int index;
+
+	/**
+	 * Creates a spliterator over the primes within [lo, hi).
+	 */
+	PrimeSpliterator(final long lo, final long hi) {
+		this(lo, hi, new Base(), Math.max(PrimeSieve.SEGMENT_SIZE,
+				Math.min(MAX_WIDTH, Long.highestOneBit(PrimitiveMath.isqrt(hi)) << 2)));
+	}
+
+	private PrimeSpliterator(final long lo, final long hi, final Base base, final long width) {
+		this.base = base;
+		this.width = width;
+		this.lo = lo;
+		this.hi = hi;
+		buffer = new long[0];
+		index = 0;
+	}
+
+	/**
+	 * Sieves the next segment into the buffer, returning false if the range is
+	 * exhausted.
+	 */
+	private boolean fill() {
+
+		if (lo >= hi)
+			return false;
+
+		final long end = hi - lo > width ? lo + width : hi;
+
+		final long root = PrimitiveMath.isqrt(end - 1);
+		final long[] primes = base.upTo(root);
+
+		buffer = PrimeSieve.segment(lo, end, primes, primes.length, Math.min(root, SHARED_BASE_LIMIT));
+		index = 0;
+		lo = end;
+
+		return true;
+	}
+
+	@Override
+	public boolean tryAdvance(final LongConsumer action) {
+
+		while (index >= buffer.length)
+			if (!fill())
+				return false;
+
+		action.accept(buffer[index++]);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(final LongConsumer action) {
+
+		do {
+			final long[] primes = buffer;
+			for (int i = index; i < primes.length; i++)
+				action.accept(primes[i]);
+			index = primes.length;
+		} while (fill());
+	}
+
+	@Override
+	public Spliterator.OfLong trySplit() {
+
+		final long segments = (hi - lo) / width;
+
+		if (segments < 2)
+			return null;
+
+		final long mid = lo + segments / 2 * width;
+		final PrimeSpliterator prefix = new PrimeSpliterator(lo, mid, base, width);
+
+		// The buffered primes precede the whole unsieved range, so they go with the
+		// prefix.
+		prefix.buffer = buffer;
+		prefix.index = index;
+
+		buffer = new long[0];
+		index = 0;
+		lo = mid;
+
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+
+		final long remaining = Math.max(0, hi - Math.max(lo, 2));
+
+		// π(hi) - π(lo) is close to the width of the range over ln(hi).
+		return buffer.length - index + (long) (remaining / Math.max(1, Math.log(hi)));
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+	}
+
+	@Override
+	public Comparator<? super Long> getComparator() {
+		return null;
+	}
+}
@@ -1,12 +1,274 @@
 package soluturus.calculations;
 
+/**
+ * Defines static methods for arithmetic on longs which would otherwise be done
+ * with BigIntegers.
+ * <p>
+ * Overflow is reported by {@link #addOverflows(long, long) addOverflows} and
+ * {@link #multiplyOverflows(long, long) multiplyOverflows} rather than by
+ * exceptions, so callers can take the long path whenever it is exact and only
+ * promote to BigInteger when it is not. Modular products are taken in full 128
+ * bits through {@link Math#multiplyHigh(long, long) multiplyHigh}, so every
+ * modulus up to {@link Long#MAX_VALUE} is supported.
+ *
+ * @author Miles K Bertrand
+ *
+ */
 public final class PrimitiveMath {
 
+	private static final long MASK_32 = 0xFFFFFFFFL;
+
+	/**
+	 * The largest longs whose square and cube are longs as well.
+	 */
+	private static final long MAX_SQUARE_ROOT = 3037000499L;
+	private static final long MAX_CUBE_ROOT = 2097151;
+
 	private PrimitiveMath() {
 		throw new UnsupportedOperationException();
 	}
 
-	public static final long gcd(final long a, final long b) {
-		return b == 0 ? a : gcd(b, a % b);
+	/**
+	 * Returns whether a + b overflows a long.
+	 *
+	 * @param a
+	 * @param b
+	 * @return whether the sum of a and b is not a long
+	 */
+	public static final boolean addOverflows(final long a, final long b) {
+		final long sum = a + b;
+		return ((a ^ sum) & (b ^ sum)) < 0;
+	}
+
+	/**
+	 * Returns whether a * b overflows a long.
+	 *
+	 * @param a
+	 * @param b
+	 * @return whether the product of a and b is not a long
+	 */
+	public static final boolean multiplyOverflows(final long a, final long b) {
+		return Math.multiplyHigh(a, b) != (a * b) >> 63;
+	}
+
+	/**
+	 * Returns ab mod m, which is never negative.
+	 *
+	 * @param a
+	 * @param b
+	 * @param m the modulus, which must be positive
+	 * @return ab mod m
+	 * @throws ArithmeticException if m is not positive
+	 */
+	public static final long mulmod(long a, long b, final long m) {
+
+		if (m <= 0)
+			throw new ArithmeticException("Modulus not positive: " + m);
+
+		a = Math.floorMod(a, m);
+		b = Math.floorMod(b, m);
+
+		// Products of numbers below 2^31 fit in a long.
+		if ((a | b) >>> 31 == 0)
+			return a * b % m;
+
+		return remainder(Math.multiplyHigh(a, b), a * b, m);
+	}
+
+	/**
+	 * Returns base<sup>exponent</sup> mod m, which is never negative, by repeated
+	 * squaring.
+	 *
+	 * @param base
+	 * @param exponent which must not be negative
+	 * @param m        the modulus, which must be positive
+	 * @return base<sup>exponent</sup> mod m
+	 * @throws ArithmeticException if exponent is negative or m is not positive
+	 */
+	public static final long powmod(long base, long exponent, final long m) {
+
+		if (exponent < 0)
+			throw new ArithmeticException("Negative exponent: " + exponent);
+
+		base = mulmod(base, 1, m);
+		long result = 1 % m;
+
+		while (exponent != 0) {
+			if ((exponent & 1) != 0)
+				result = mulmod(result, base, m);
+			base = mulmod(base, base, m);
+			exponent >>>= 1;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns (hi * 2<sup>64</sup> + lo) mod m for the unsigned 128 bit number hi:lo,
+	 * where hi is below m, by long division in 32 bit digits.
+	 */
+	private static long remainder(long hi, long lo, long m) {
+
+		// Normalizing m to have its top bit set keeps each estimated digit within 2
+		// of the true one.
+		final int shift = Long.numberOfLeadingZeros(m);
+
+		m <<= shift;
+		hi = shift == 0 ? hi : hi << shift | lo >>> 64 - shift;
+		lo <<= shift;
+
+		hi = remainderDigit(hi, lo >>> 32, m);
+		hi = remainderDigit(hi, lo & MASK_32, m);
+
+		return hi >>> shift;
+	}
+
+	/**
+	 * Returns (hi * 2<sup>32</sup> + digit) mod m, where hi is below m and m has
+	 * its top bit set.
+	 */
+	private static long remainderDigit(final long hi, final long digit, final long m) {
+
+		final long mHigh = m >>> 32;
+		final long mLow = m & MASK_32;
+
+		long q = Long.divideUnsigned(hi, mHigh);
+		long r = hi - q * mHigh;
+
+		while (q >>> 32 != 0 || Long.compareUnsigned(q * mLow, r << 32 | digit) > 0) {
+
+			q--;
+			r += mHigh;
+
+			if (r >>> 32 != 0)
+				break;
+		}
+
+		return (hi << 32 | digit) - q * m;
+	}
+
+	/**
+	 * Returns the square root of n rounded down.
+	 *
+	 * @param n which must not be negative
+	 * @return the integer square root of n
+	 * @throws ArithmeticException if n is negative
+	 */
+	public static final long isqrt(final long n) {
+
+		if (n < 0)
+			throw new ArithmeticException("Square root of a negative number");
+
+		// The double estimate is off by at most one either way.
+		long r = (long) Math.sqrt((double) n);
+
+		if (r > MAX_SQUARE_ROOT || r * r > n)
+			r--;
+		else if (r < MAX_SQUARE_ROOT && (r + 1) * (r + 1) <= n)
+			r++;
+
+		return r;
+	}
+
+	/**
+	 * Returns the cube root of n rounded towards zero.
+	 *
+	 * @param n
+	 * @return the integer cube root of n
+	 */
+	public static final long icbrt(final long n) {
+
+		if (n < 0)
+			// The cube root of Long.MIN_VALUE is exactly -2^21.
+			return n == Long.MIN_VALUE ? -(MAX_CUBE_ROOT + 1) : -icbrt(-n);
+
+		long r = Math.min((long) Math.cbrt((double) n), MAX_CUBE_ROOT);
+
+		while (r * r * r > n)
+			r--;
+		while (r < MAX_CUBE_ROOT && (r + 1) * (r + 1) * (r + 1) <= n)
+			r++;
+
+		return r;
+	}
+
+	/**
+	 * Returns the Greatest Common Divisor of a and b, which is never negative
+	 * unless it is 2<sup>63</sup>, in which case it overflows to
+	 * {@link Long#MIN_VALUE} as {@link Math#abs(long)} does.
+	 * <p>
+	 * Uses Stein's binary algorithm, which only shifts and subtracts.
+	 *
+	 * @param a
+	 * @param b
+	 * @return gcd(a, b)
+	 */
+	public static final long gcd(long a, long b) {
+
+		if (a == 0)
+			return Math.abs(b);
+		else if (b == 0)
+			return Math.abs(a);
+
+		// Long.MIN_VALUE stays negative, but is treated as 2^63 by the unsigned
+		// operations below.
+		a = Math.abs(a);
+		b = Math.abs(b);
+
+		final int shift = Long.numberOfTrailingZeros(a | b);
+		a >>>= Long.numberOfTrailingZeros(a);
+
+		do {
+
+			b >>>= Long.numberOfTrailingZeros(b);
+
+			if (Long.compareUnsigned(a, b) > 0) {
+				final long t = a;
+				a = b;
+				b = t;
+			}
+
+			b -= a;
+		} while (b != 0);
+
+		return a << shift;
+	}
+
+	/**
+	 * Returns { gcd(a, b), x, y } such that ax + by = gcd(a, b), where the gcd is
+	 * never negative.
+	 *
+	 * @param a
+	 * @param b
+	 * @return the gcd of a and b and its cofactors
+	 * @throws ArithmeticException if a or b is {@link Long#MIN_VALUE}
+	 */
+	public static final long[] gcdExtended(final long a, final long b) {
+
+		long r0 = Math.absExact(a);
+		long r1 = Math.absExact(b);
+		long x0 = 1;
+		long x1 = 0;
+		long y0 = 0;
+		long y1 = 1;
+
+		while (r1 != 0) {
+
+			final long q = r0 / r1;
+
+			long t = r0 - q * r1;
+			r0 = r1;
+			r1 = t;
+
+			t = x0 - q * x1;
+			x0 = x1;
+			x1 = t;
+
+			t = y0 - q * y1;
+			y0 = y1;
+			y1 = t;
+		}
+
+		return new long[] { r0, a < 0 ? -x0 : x0, b < 0 ? -y0 : y0 };
 	}
 }
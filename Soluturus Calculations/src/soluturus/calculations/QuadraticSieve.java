@@ -0,0 +1,920 @@
+package soluturus.calculations;
+
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Finds a factor of a composite with the self-initializing quadratic sieve.
+ * <p>
+ * Relations Y<sup>2</sup> &equiv; Q (mod n), where Q factors completely over a
+ * base of small primes, are gathered by sieving the polynomials Q(x) = (Ax +
+ * B)<sup>2</sup> - kn over [-M, M). Each A is a product of s primes from the
+ * factor base, which admits 2<sup>s - 1</sup> values of B that are stepped
+ * through in Gray code order, so that moving to the next polynomial only adds
+ * or subtracts one precomputed root offset for each prime. The polynomials
+ * sharing an A form a family, and families are sieved in parallel on the
+ * common {@link ForkJoinPool}.
+ * <p>
+ * Relations whose Q leaves a single prime beyond the factor base are kept, and
+ * two of them with the same leftover prime combine into one relation. Once
+ * there are more relations than primes in the factor base, structured Gaussian
+ * elimination over GF(2) finds subsets whose product is a square, each of which
+ * gives a congruence of squares X<sup>2</sup> &equiv; Y<sup>2</sup> (mod n) and
+ * thereby a factor gcd(X - Y, n) with probability at least 1/2.
+ * <p>
+ * The sieve is tuned for composites of roughly 20 to 80 digits, and must not be
+ * given a prime or a perfect power, for which it never finishes.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+final class QuadraticSieve {
+
+	/**
+	 * Rows of { bit length of kn, factor base size, M }, between which the
+	 * parameters are interpolated.
+	 */
+	private static final int[][] PARAMETERS = { //
+			{ 64, 80, 1 << 13 }, //
+			{ 80, 120, 1 << 14 }, //
+			{ 100, 200, 1 << 15 }, //
+			{ 130, 600, 1 << 15 }, //
+			{ 165, 1600, 1 << 16 }, //
+			{ 200, 4000, 3 << 15 }, //
+			{ 230, 8000, 1 << 17 }, //
+			{ 265, 13000, 3 << 16 }, //
+			{ 300, 20000, 1 << 18 } };
+
+	private static final int[] MULTIPLIERS = { 1, 3, 5, 7, 11, 13, 15, 17, 19, 21, 23, 29, 31, 33, 35, 37, 39, 41, 43,
+			47, 51, 53, 55, 57, 59, 61, 65, 67, 69, 71, 73 };
+
+	/**
+	 * Primes below this are not sieved, since they cost the most time to sieve
+	 * while adding the least to each entry.
+	 */
+	private static final int SMALL_PRIME_LIMIT = 32;
+
+	/**
+	 * Primes below this are sieved one block of this many entries at a time, so
+	 * that the entries they touch stay within the L1 cache.
+	 */
+	private static final int BLOCK_SIZE = 1 << 15;
+
+	/**
+	 * The amount of relations gathered beyond the size of the factor base, each
+	 * of which will most likely add another dependency.
+	 */
+	private static final int EXTRA_RELATIONS = 64;
+
+	/**
+	 * Reads the sieve eight entries at a time, so that it can be scanned for the
+	 * high bits which mark candidates.
+	 */
+	private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	/**
+	 * A relation y<sup>2</sup> &equiv; Q (mod n), where Q is the product of the
+	 * columns within factors and the square of large.
+	 * <p>
+	 * Column 0 stands for -1, and column i + 1 for the i<sup>th</sup> prime of the
+	 * factor base. Until a partial relation is combined with another of the same
+	 * large prime, Q is only divisible by large once.
+	 */
+	private static final class Relation {
+
+		final BigInteger y;
+		final int[] factors;
+		final long large;
+
+		Relation(final BigInteger y, final int[] factors, final long large) {
+			this.y = y;
+			this.factors = factors;
+			this.large = large;
+		}
+	}
+
+	private final BigInteger n;
+	private final BigInteger kn;
+
+	private final int size;
+	private final int[] primes;
+	private final int[] roots;
+	private final byte[] logs;
+
+	/**
+	 * Whether each prime of the factor base divides k, in which case it has only
+	 * one root and is not sieved.
+	 */
+	private final boolean[] excluded;
+
+	private final int halfInterval;
+	private final int firstSieved;
+	private final int firstUnblocked;
+	private final int threshold;
+	private final long largeLimit;
+
+	/**
+	 * A factor of n found while building the factor base, if any.
+	 */
+	private BigInteger divisor;
+
+	private QuadraticSieve(final BigInteger n) {
+
+		this.n = n;
+		kn = n.multiply(BigInteger.valueOf(multiplier(n)));
+
+		final int bits = kn.bitLength();
+		final int target = (int) parameter(bits, 1);
+		halfInterval = (int) parameter(bits, 2) & -64;
+
+		final ArrayList<int[]> base = new ArrayList<>();
+
+		for (long bound = Math.max(1024, (long) (3 * target * Math.log(target))); base.size() < target; bound *= 2) {
+
+			base.clear();
+
+			for (long p : PrimeSieve.segment(0, bound, new long[0], 0)) {
+
+				final long residue = kn.mod(BigInteger.valueOf(p)).longValue();
+
+				if (p == 2)
+					base.add(new int[] { 2, (int) residue });
+				else if (residue == 0) {
+
+					if (n.mod(BigInteger.valueOf(p)).signum() == 0) {
+						divisor = BigInteger.valueOf(p);
+						break;
+					}
+
+					base.add(new int[] { (int) p, 0 });
+				} else if (PrimitiveMath.powmod(residue, (p - 1) / 2, p) == 1)
+					base.add(new int[] { (int) p, (int) sqrtMod(residue, p) });
+
+				if (base.size() == target)
+					break;
+			}
+
+			if (divisor != null)
+				break;
+		}
+
+		size = base.size();
+		primes = new int[size];
+		roots = new int[size];
+		logs = new byte[size];
+		excluded = new boolean[size];
+
+		int first = size;
+		int unblocked = size;
+
+		for (int i = 0; i < size; i++) {
+
+			primes[i] = base.get(i)[0];
+			roots[i] = base.get(i)[1];
+			logs[i] = (byte) Math.round(log2(primes[i]));
+			excluded[i] = primes[i] > 2 && roots[i] == 0;
+
+			if (first == size && primes[i] >= SMALL_PRIME_LIMIT)
+				first = i;
+			if (unblocked == size && primes[i] >= BLOCK_SIZE)
+				unblocked = i;
+		}
+
+		firstSieved = first;
+		firstUnblocked = unblocked;
+
+		final long largest = size == 0 ? 2 : primes[size - 1];
+		largeLimit = largest * Math.min(largest, 64);
+
+		// The skipped primes would otherwise add about 2 log(p) / (p - 1) to every
+		// entry.
+		double skipped = 1;
+		for (int i = 0; i < firstSieved; i++)
+			if (!excluded[i] && primes[i] > 2)
+				skipped += 2 * log2(primes[i]) / (primes[i] - 1);
+
+		threshold = (int) Math.min(127, log2(halfInterval) + log2(kn) / 2 - 0.5 - log2(largeLimit) - skipped);
+	}
+
+	/**
+	 * Returns a nontrivial factor of n, which must be odd, composite, not a
+	 * perfect power, and free of prime factors below
+	 * {@value #SMALL_PRIME_LIMIT}.
+	 *
+	 * @param n
+	 * @return a nontrivial factor of n
+	 */
+	static BigInteger factor(final BigInteger n) {
+		return new QuadraticSieve(n).factor();
+	}
+
+	/**
+	 * Returns the size of the factor base for a multiple of the given bit length.
+	 * The time the sieve takes grows roughly with its square.
+	 *
+	 * @param bits
+	 * @return the size of the factor base
+	 */
+	static int factorBaseSize(final int bits) {
+		return (int) parameter(bits, 1);
+	}
+
+	/**
+	 * Returns the given column of {@link #PARAMETERS} interpolated at bits.
+	 */
+	private static double parameter(final int bits, final int column) {
+
+		int row = 1;
+		while (row < PARAMETERS.length - 1 && PARAMETERS[row][0] < bits)
+			row++;
+
+		final int[] lo = PARAMETERS[row - 1];
+		final int[] hi = PARAMETERS[row];
+		final double t = Math.max(0, Math.min(1, (double) (bits - lo[0]) / (hi[0] - lo[0])));
+
+		return lo[column] + t * (hi[column] - lo[column]);
+	}
+
+	private BigInteger factor() {
+
+		if (divisor != null)
+			return divisor;
+
+		// kn is a square only if n is k times a square, in which case its root
+		// shares a factor with n.
+		final BigInteger root = kn.sqrt();
+		if (root.multiply(root).equals(kn))
+			return IntegerUtils.gcd(n, root);
+
+		final List<Relation> relations = new ArrayList<>();
+		final Map<Long, Relation> partials = new HashMap<>();
+
+		final Random random = new Random(n.hashCode());
+		final Set<BigInteger> used = new HashSet<>();
+		final int batch = 2 * ForkJoinPool.getCommonPoolParallelism();
+
+		for (int target = size + 1 + EXTRA_RELATIONS;; target += EXTRA_RELATIONS) {
+
+			while (relations.size() < target) {
+
+				final List<int[]> families = new ArrayList<>();
+				for (int i = 0; i < batch; i++)
+					families.add(chooseA(random, used));
+
+				for (List<Relation> found : families.parallelStream().map(this::sieve).collect(Collectors.toList()))
+					for (Relation r : found)
+						if (r.large == 1)
+							relations.add(r);
+						else {
+
+							final Relation other = partials.putIfAbsent(r.large, r);
+
+							if (other != null)
+								relations.add(combine(other, r));
+						}
+			}
+
+			final BigInteger factor = solve(relations);
+
+			if (factor != null)
+				return factor;
+		}
+	}
+
+	/**
+	 * Chooses the factor base indices of the primes of a new A, whose product is
+	 * close to √(2kn) / M.
+	 */
+	private int[] chooseA(final Random random, final Set<BigInteger> used) {
+
+		final double logA = (log2(kn) + 1) / 2 - log2(halfInterval);
+		final double largest = log2(primes[size - 1]);
+
+		final int s = Math.max(2, (int) Math.ceil(logA / Math.min(11, largest - 1)));
+		final double logQ = logA / s;
+
+		// The factors of A are drawn from a window of primes near 2^logQ.
+		int center = firstSieved;
+		while (center < size - 1 && log2(primes[center]) < logQ)
+			center++;
+
+		final int width = Math.max(2 * s, 16);
+		final int lo = Math.max(firstSieved, center - width);
+		final int hi = Math.min(size - 1, center + width);
+
+		for (int attempt = 0;; attempt++) {
+
+			final int[] factors = new int[s];
+			double remaining = logA;
+
+			fill: for (int j = 0; j < s - 1; j++) {
+
+				int i;
+				do
+					i = lo + random.nextInt(Math.max(1, hi - lo));
+				while (excluded[i] || contains(factors, j, i));
+
+				factors[j] = i;
+				remaining -= log2(primes[i]);
+
+				if (j == s - 2) {
+
+					// The last factor brings A as close to its ideal size as the factor base
+					// allows.
+					int last = firstSieved;
+					while (last < size - 1 && log2(primes[last]) < remaining)
+						last++;
+
+					for (int step = 0; last - step >= firstSieved || last + step < size; step++) {
+
+						for (int candidate : new int[] { last - step, last + step })
+							if (candidate >= firstSieved && candidate < size && !excluded[candidate]
+									&& !contains(factors, s - 1, candidate)) {
+								factors[s - 1] = candidate;
+								break fill;
+							}
+					}
+				}
+			}
+
+			BigInteger a = ONE;
+			for (int q : factors)
+				a = a.multiply(BigInteger.valueOf(primes[q]));
+
+			// Small factor bases allow few choices of A, so repeats are eventually
+			// tolerated.
+			if (used.add(a) || attempt > 1000)
+				return factors;
+		}
+	}
+
+	private static boolean contains(final int[] array, final int length, final int value) {
+
+		for (int i = 0; i < length; i++)
+			if (array[i] == value)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Sieves every polynomial with the A whose factors are aFactors, returning the
+	 * full and partial relations found.
+	 */
+	private List<Relation> sieve(final int[] aFactors) {
+
+		final int s = aFactors.length;
+		final boolean[] excluded = this.excluded.clone();
+
+		BigInteger a = ONE;
+		for (int q : aFactors) {
+			excluded[q] = true;
+			a = a.multiply(BigInteger.valueOf(primes[q]));
+		}
+
+		// B is the sum of the terms (A / q) γ, where γ ≡ ±√(kn) (A / q)^-1 (mod q), so
+		// that B^2 ≡ kn (mod A) whatever the sign of each term.
+		final long[] gammas = new long[s];
+		final BigInteger[] terms = new BigInteger[s];
+		BigInteger b = ZERO;
+
+		for (int j = 0; j < s; j++) {
+
+			final long q = primes[aFactors[j]];
+			final BigInteger quotient = a.divide(BigInteger.valueOf(q));
+
+			long gamma = roots[aFactors[j]] * inverse(quotient.mod(BigInteger.valueOf(q)).longValue(), q) % q;
+			if (gamma > q / 2)
+				gamma = q - gamma;
+
+			gammas[j] = gamma;
+			terms[j] = quotient.multiply(BigInteger.valueOf(gamma));
+			b = b.add(terms[j]);
+		}
+
+		final int[] soln1 = new int[size];
+		final int[] soln2 = new int[size];
+		final int[][] offsets = new int[s][size];
+
+		for (int i = 0; i < size; i++) {
+
+			if (excluded[i])
+				continue;
+
+			final long p = primes[i];
+			final long[] others = new long[s];
+			long aModP = 1;
+
+			for (int j = 0; j < s; j++) {
+				others[j] = 1;
+				aModP = aModP * primes[aFactors[j]] % p;
+			}
+
+			for (int j = 0; j < s; j++)
+				for (int l = 0; l < s; l++)
+					if (l != j)
+						others[j] = others[j] * primes[aFactors[l]] % p;
+
+			final long aInverse = inverse(aModP, p);
+			long bModP = 0;
+
+			for (int j = 0; j < s; j++) {
+				final long term = gammas[j] * others[j] % p;
+				offsets[j][i] = (int) (2 * term * aInverse % p);
+				bModP += term;
+			}
+
+			bModP %= p;
+
+			final long t = roots[i];
+
+			soln1[i] = (int) (((t - bModP + p) % p * aInverse + halfInterval) % p);
+			soln2[i] = (int) (((2 * p - t - bModP) % p * aInverse + halfInterval) % p);
+		}
+
+		final byte[] sieve = new byte[2 * halfInterval];
+		final int[] next1 = new int[firstUnblocked];
+		final int[] next2 = new int[firstUnblocked];
+		final List<Relation> found = new ArrayList<>();
+		final int polynomials = 1 << s - 1;
+
+		for (int poly = 0;;) {
+
+			// Entries start at 128 - threshold, so that those which reach the threshold
+			// have their high bit set.
+			Arrays.fill(sieve, (byte) (128 - threshold));
+
+			System.arraycopy(soln1, 0, next1, 0, firstUnblocked);
+			System.arraycopy(soln2, 0, next2, 0, firstUnblocked);
+
+			for (int start = 0; start < sieve.length; start += BLOCK_SIZE) {
+
+				final int end = Math.min(sieve.length, start + BLOCK_SIZE);
+
+				for (int i = firstSieved; i < firstUnblocked; i++) {
+
+					if (excluded[i])
+						continue;
+
+					final int p = primes[i];
+					final byte log = logs[i];
+
+					int j = next1[i];
+					for (; j < end; j += p)
+						sieve[j] += log;
+					next1[i] = j;
+
+					if (soln2[i] != soln1[i]) {
+						j = next2[i];
+						for (; j < end; j += p)
+							sieve[j] += log;
+						next2[i] = j;
+					}
+				}
+			}
+
+			for (int i = firstUnblocked; i < size; i++) {
+
+				if (excluded[i])
+					continue;
+
+				final int p = primes[i];
+				final byte log = logs[i];
+
+				for (int j = soln1[i]; j < sieve.length; j += p)
+					sieve[j] += log;
+
+				if (soln2[i] != soln1[i])
+					for (int j = soln2[i]; j < sieve.length; j += p)
+						sieve[j] += log;
+			}
+
+			for (int w = 0; w < sieve.length; w += Long.BYTES)
+				if (((long) WORDS.get(sieve, w) & HIGH_BITS) != 0)
+					for (int j = w; j < w + Long.BYTES; j++)
+						if (sieve[j] < 0) {
+
+							final Relation r = relation(a, b, aFactors, excluded, soln1, soln2, j);
+
+							if (r != null)
+								found.add(r);
+						}
+
+			if (++poly == polynomials)
+				return found;
+
+			// Gray code order flips the sign of a single term of B at a time.
+			final int v = Integer.numberOfTrailingZeros(poly);
+			final boolean negate = ((poly ^ poly >> 1) >> v & 1) != 0;
+			final BigInteger step = terms[v].shiftLeft(1);
+
+			b = negate ? b.subtract(step) : b.add(step);
+
+			final int[] offset = offsets[v];
+
+			for (int i = 0; i < size; i++) {
+
+				if (excluded[i])
+					continue;
+
+				final int p = primes[i];
+
+				if (negate) {
+					soln1[i] += offset[i];
+					soln2[i] += offset[i];
+					if (soln1[i] >= p)
+						soln1[i] -= p;
+					if (soln2[i] >= p)
+						soln2[i] -= p;
+				} else {
+					soln1[i] -= offset[i];
+					soln2[i] -= offset[i];
+					if (soln1[i] < 0)
+						soln1[i] += p;
+					if (soln2[i] < 0)
+						soln2[i] += p;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Factors Q(x) over the factor base at sieve position j, returning a relation
+	 * if it is smooth apart from at most one large prime, or null otherwise.
+	 */
+	private Relation relation(final BigInteger a, final BigInteger b, final int[] aFactors, final boolean[] excluded,
+			final int[] soln1, final int[] soln2, final int j) {
+
+		final BigInteger y = a.multiply(BigInteger.valueOf(j - halfInterval)).add(b);
+
+		// Q(x) = A (Ax^2 + 2Bx + C), so only the second factor needs to be divided.
+		BigInteger v = y.multiply(y).subtract(kn).divide(a);
+
+		final int[] factors = new int[aFactors.length + v.bitLength() + 1];
+		int count = 0;
+
+		if (v.signum() < 0) {
+			factors[count++] = 0;
+			v = v.negate();
+		}
+
+		for (int q : aFactors)
+			factors[count++] = q + 1;
+
+		for (int i = 0; i < size && !v.equals(ONE); i++) {
+
+			final int p = primes[i];
+
+			if (excluded[i] ? v.mod(BigInteger.valueOf(p)).signum() == 0
+					: j % p == soln1[i] || j % p == soln2[i]) {
+
+				final BigInteger prime = BigInteger.valueOf(p);
+				BigInteger[] qr;
+
+				while ((qr = v.divideAndRemainder(prime))[1].signum() == 0) {
+					v = qr[0];
+					factors[count++] = i + 1;
+				}
+			}
+		}
+
+		if (v.equals(ONE))
+			return new Relation(y.mod(n), Arrays.copyOf(factors, count), 1);
+		else if (v.bitLength() < Long.SIZE && v.longValue() < largeLimit)
+			return new Relation(y.mod(n), Arrays.copyOf(factors, count), v.longValue());
+
+		return null;
+	}
+
+	/**
+	 * Combines two partial relations with the same large prime into a relation
+	 * which includes its square.
+	 */
+	private Relation combine(final Relation first, final Relation second) {
+
+		final int[] factors = Arrays.copyOf(first.factors, first.factors.length + second.factors.length);
+		System.arraycopy(second.factors, 0, factors, first.factors.length, second.factors.length);
+
+		return new Relation(first.y.multiply(second.y).mod(n), factors, first.large);
+	}
+
+	/**
+	 * Finds the dependencies between the relations, returning a nontrivial factor
+	 * of n from the first one which yields one, or null if none do.
+	 */
+	private BigInteger solve(final List<Relation> relations) {
+
+		final int columns = size + 1;
+		final int count = relations.size();
+
+		final BitSet[] rows = new BitSet[count];
+		final BitSet[] origins = new BitSet[count];
+		final boolean[] removed = new boolean[count];
+		final int[] weights = new int[columns];
+
+		for (int r = 0; r < count; r++) {
+
+			rows[r] = new BitSet(columns);
+			for (int f : relations.get(r).factors)
+				rows[r].flip(f);
+
+			origins[r] = new BitSet(count);
+			origins[r].set(r);
+
+			for (int c = rows[r].nextSetBit(0); c >= 0; c = rows[r].nextSetBit(c + 1))
+				weights[c]++;
+		}
+
+		// Structured elimination: a column in only one row rules that row out of
+		// every dependency, and a column in two rows is eliminated by merging them.
+		// Either way the matrix loses one row and at least one column.
+		for (boolean changed = true; changed;) {
+
+			changed = false;
+
+			for (int c = 0; c < columns; c++) {
+
+				if (weights[c] != 1 && weights[c] != 2)
+					continue;
+
+				int first = -1;
+				int second = -1;
+
+				for (int r = 0; r < count && second < 0; r++)
+					if (!removed[r] && rows[r].get(c)) {
+						if (first < 0)
+							first = r;
+						else
+							second = r;
+					}
+
+				if (second < 0) {
+					remove(rows[first], weights);
+					removed[first] = true;
+				} else {
+					remove(rows[first], weights);
+					remove(rows[second], weights);
+
+					rows[first].xor(rows[second]);
+					origins[first].xor(origins[second]);
+					removed[second] = true;
+
+					for (int d = rows[first].nextSetBit(0); d >= 0; d = rows[first].nextSetBit(d + 1))
+						weights[d]++;
+				}
+
+				changed = true;
+			}
+		}
+
+		final int[] columnIndex = new int[columns];
+		int width = 0;
+
+		for (int c = 0; c < columns; c++)
+			columnIndex[c] = weights[c] > 0 ? width++ : -1;
+
+		final List<Integer> live = new ArrayList<>();
+		for (int r = 0; r < count; r++)
+			if (!removed[r])
+				live.add(r);
+
+		final int height = live.size();
+		final int columnWords = (width + 63) >>> 6;
+		final long[][] matrix = new long[height][columnWords + ((height + 63) >>> 6)];
+
+		for (int i = 0; i < height; i++) {
+
+			final BitSet row = rows[live.get(i)];
+
+			for (int c = row.nextSetBit(0); c >= 0; c = row.nextSetBit(c + 1))
+				matrix[i][columnIndex[c] >>> 6] |= 1L << columnIndex[c];
+
+			matrix[i][columnWords + (i >>> 6)] |= 1L << i;
+		}
+
+		// Dense Gaussian elimination on what remains, tracking each row's
+		// combination of the original rows alongside it.
+		int rank = 0;
+
+		for (int c = 0; c < width && rank < height; c++) {
+
+			final int word = c >>> 6;
+			final long bit = 1L << c;
+
+			int pivot = rank;
+			while (pivot < height && (matrix[pivot][word] & bit) == 0)
+				pivot++;
+
+			if (pivot == height)
+				continue;
+
+			final long[] row = matrix[pivot];
+			matrix[pivot] = matrix[rank];
+			matrix[rank] = row;
+
+			for (int r = rank + 1; r < height; r++)
+				if ((matrix[r][word] & bit) != 0) {
+					final long[] target = matrix[r];
+					for (int w = word; w < row.length; w++)
+						target[w] ^= row[w];
+				}
+
+			rank++;
+		}
+
+		for (int r = rank; r < height; r++) {
+
+			final BitSet dependency = new BitSet(count);
+
+			for (int i = 0; i < height; i++)
+				if ((matrix[r][columnWords + (i >>> 6)] & 1L << i) != 0)
+					dependency.xor(origins[live.get(i)]);
+
+			final BigInteger factor = squareRoot(relations, dependency);
+
+			if (factor != null)
+				return factor;
+		}
+
+		return null;
+	}
+
+	private static void remove(final BitSet row, final int[] weights) {
+		for (int c = row.nextSetBit(0); c >= 0; c = row.nextSetBit(c + 1))
+			weights[c]--;
+	}
+
+	/**
+	 * Multiplies the relations of a dependency into X<sup>2</sup> &equiv;
+	 * Y<sup>2</sup> (mod n), returning gcd(X - Y, n) if it is a nontrivial
+	 * factor, or null otherwise.
+	 */
+	private BigInteger squareRoot(final List<Relation> relations, final BitSet dependency) {
+
+		final int[] exponents = new int[size + 1];
+		BigInteger x = ONE;
+		BigInteger y = ONE;
+
+		for (int r = dependency.nextSetBit(0); r >= 0; r = dependency.nextSetBit(r + 1)) {
+
+			final Relation relation = relations.get(r);
+
+			x = x.multiply(relation.y).mod(n);
+
+			for (int f : relation.factors)
+				exponents[f]++;
+
+			if (relation.large != 1)
+				y = y.multiply(BigInteger.valueOf(relation.large)).mod(n);
+		}
+
+		for (int c = 1; c <= size; c++)
+			if (exponents[c] != 0)
+				y = y.multiply(BigInteger.valueOf(primes[c - 1]).modPow(BigInteger.valueOf(exponents[c] / 2), n)).mod(n);
+
+		final BigInteger g = IntegerUtils.gcd(n, x.subtract(y).mod(n));
+
+		return g.equals(ONE) || g.equals(n) ? null : g;
+	}
+
+	/**
+	 * Chooses the multiplier k for which kn has the most small primes in its
+	 * factor base, by the Knuth-Schroeppel function.
+	 */
+	private static int multiplier(final BigInteger n) {
+
+		final long[] small = PrimeSieve.segment(3, 1000, new long[0], 0);
+
+		int best = 1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+
+		for (int k : MULTIPLIERS) {
+
+			final BigInteger kn = n.multiply(BigInteger.valueOf(k));
+			double score = -0.5 * Math.log(k);
+
+			switch (kn.intValue() & 7) {
+			case 1:
+				score += 2 * Math.log(2);
+				break;
+			case 5:
+				score += Math.log(2);
+				break;
+			default:
+				score += 0.5 * Math.log(2);
+			}
+
+			for (long p : small) {
+
+				final long residue = kn.mod(BigInteger.valueOf(p)).longValue();
+
+				if (residue == 0)
+					score += Math.log(p) / p;
+				else if (PrimitiveMath.powmod(residue, (p - 1) / 2, p) == 1)
+					score += 2 * Math.log(p) / (p - 1);
+			}
+
+			if (score > bestScore) {
+				bestScore = score;
+				best = k;
+			}
+		}
+
+		return best;
+	}
+
+	private static double log2(final double x) {
+		return Math.log(x) / Math.log(2);
+	}
+
+	private static double log2(final BigInteger x) {
+
+		final int shift = Math.max(0, x.bitLength() - 60);
+
+		return log2(x.shiftRight(shift).doubleValue()) + shift;
+	}
+
+	/**
+	 * Returns a<sup>-1</sup> mod m, where a and m are coprime and m &lt;
+	 * 2<sup>31</sup>.
+	 */
+	private static long inverse(final long a, final long m) {
+
+		long r0 = m;
+		long r1 = a % m;
+		long s0 = 0;
+		long s1 = 1;
+
+		while (r1 != 0) {
+
+			final long q = r0 / r1;
+
+			long t = r0 - q * r1;
+			r0 = r1;
+			r1 = t;
+
+			t = s0 - q * s1;
+			s0 = s1;
+			s1 = t;
+		}
+
+		return s0 < 0 ? s0 + m : s0;
+	}
+
+	/**
+	 * Returns a square root of a modulo the odd prime p, where a is a quadratic
+	 * residue and p &lt; 2<sup>31</sup>, by the Tonelli-Shanks algorithm.
+	 */
+	private static long sqrtMod(final long a, final long p) {
+
+		if ((p & 3) == 3)
+			return PrimitiveMath.powmod(a, (p + 1) / 4, p);
+
+		final int s = Long.numberOfTrailingZeros(p - 1);
+		final long q = (p - 1) >>> s;
+
+		long z = 2;
+		while (PrimitiveMath.powmod(z, (p - 1) / 2, p) != p - 1)
+			z++;
+
+		long m = s;
+		long c = PrimitiveMath.powmod(z, q, p);
+		long t = PrimitiveMath.powmod(a, q, p);
+		long r = PrimitiveMath.powmod(a, (q + 1) / 2, p);
+
+		while (t != 1) {
+
+			int i = 0;
+			for (long u = t; u != 1; u = u * u % p)
+				i++;
+
+			long b = c;
+			for (long j = m - i - 1; j > 0; j--)
+				b = b * b % p;
+
+			m = i;
+			c = b * b % p;
+			t = t * c % p;
+			r = r * b % p;
+		}
+
+		return r;
+	}
+}
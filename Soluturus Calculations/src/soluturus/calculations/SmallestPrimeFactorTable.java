@@ -0,0 +1,203 @@
+package soluturus.calculations;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of the smallest prime factor of every integer below a limit, from
+ * which any of those integers is factored with one lookup per prime factor.
+ * <p>
+ * Only odd integers are stored, since the smallest prime factor of an even one
+ * is 2, so the table takes two bytes for each integer below its limit. It is
+ * built by a linear sieve, which writes each entry exactly once: every odd
+ * composite n is marked only from n / spf(n).
+ * <p>
+ * The {@link #getDefault() default table}, which {@link IntegerUtils} and
+ * {@link Factorizer} consult before any other method, is built the first time
+ * it is needed with the limit given by the system property
+ * {@value #LIMIT_PROPERTY}, and is disabled if that limit is not positive.
+ *
+ * @author Miles K Bertrand
+ *
+ */
+public final class SmallestPrimeFactorTable {
+
+	public static final String LIMIT_PROPERTY = "soluturus.calculations.spfLimit";
+
+	private static final int DEFAULT_LIMIT = 1 << 22;
+
+	private static final class Default {
+
+		static final SmallestPrimeFactorTable TABLE;
+
+		static {
+			final int limit = Integer.getInteger(LIMIT_PROPERTY, DEFAULT_LIMIT);
+			TABLE = limit > 0 ? new SmallestPrimeFactorTable(limit) : null;
+		}
+	}
+
+	private final int limit;
+
+	/**
+	 * Entry i is the smallest prime factor of 2i + 1.
+	 */
+	private final int[] spf;
+
+	/**
+	 * Creates the table for every integer below limit.
+	 *
+	 * @param limit the exclusive bound of the integers in the table
+	 * @throws IllegalArgumentException if limit is not positive
+	 */
+	public SmallestPrimeFactorTable(final int limit) {
+
+		if (limit < 1)
+			throw new IllegalArgumentException("Illegal table limit: " + limit);
+
+		this.limit = limit;
+		spf = new int[limit >>> 1];
+
+		// There are fewer than 1.26 n / ln n primes below n.
+		int[] primes = new int[(int) (1.26 * limit / Math.log(Math.max(limit, 3))) + 1];
+		int count = 0;
+
+		for (int i = 1; i < spf.length; i++) {
+
+			final int n = 2 * i + 1;
+
+			if (spf[i] == 0) {
+				spf[i] = n;
+
+				if (count == primes.length)
+					primes = Arrays.copyOf(primes, 2 * count);
+
+				primes[count++] = n;
+			}
+
+			// Marks n p for every odd prime p up to spf(n), which is then the smallest
+			// prime factor of n p.
+			for (int j = 0; j < count; j++) {
+
+				final int p = primes[j];
+				final long composite = (long) n * p;
+
+				if (p > spf[i] || composite >= limit)
+					break;
+
+				spf[(int) (composite >>> 1)] = p;
+			}
+		}
+	}
+
+	/**
+	 * Returns the default table, or null if it has been disabled by the system
+	 * property {@value #LIMIT_PROPERTY}.
+	 *
+	 * @return the shared table
+	 */
+	public static SmallestPrimeFactorTable getDefault() {
+		return Default.TABLE;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns whether n is in this table, which is whether 2 &le; n &lt; limit.
+	 *
+	 * @param n
+	 * @return whether n can be factored by this table
+	 */
+	public boolean contains(final long n) {
+		return n >= 2 && n < limit;
+	}
+
+	/**
+	 * Returns the smallest prime which divides n.
+	 *
+	 * @param n
+	 * @return the smallest prime factor of n
+	 * @throws IllegalArgumentException if n is not in this table
+	 */
+	public int smallestPrimeFactor(final int n) {
+
+		if (!contains(n))
+			throw new IllegalArgumentException("Not in table: " + n);
+
+		return (n & 1) == 0 ? 2 : spf[n >>> 1];
+	}
+
+	/**
+	 * Returns the prime factorization of n, which is positive.
+	 *
+	 * @param n
+	 * @return the prime factorization of n
+	 * @throws IllegalArgumentException if n is neither 1 nor in this table
+	 */
+	public Factorization factorization(final int n) {
+
+		if (n == 1)
+			return Factorization.ONE;
+		else if (!contains(n))
+			throw new IllegalArgumentException("Not in table: " + n);
+
+		return factorization(n, 1);
+	}
+
+	/**
+	 * Returns the factorization with the given sign of n, which is in this table.
+	 */
+	Factorization factorization(int n, final int signum) {
+
+		// No integer below 2^31 has more than 9 distinct prime factors.
+		final BigInteger[] primes = new BigInteger[9];
+		final int[] exponents = new int[9];
+		int size = 0;
+
+		final int twos = Integer.numberOfTrailingZeros(n);
+
+		if (twos != 0) {
+			primes[0] = BigInteger.TWO;
+			exponents[size++] = twos;
+			n >>>= twos;
+		}
+
+		while (n != 1) {
+
+			final int p = spf[n >>> 1];
+			int exponent = 0;
+
+			do {
+				n /= p;
+				exponent++;
+			} while (n % p == 0);
+
+			primes[size] = BigInteger.valueOf(p);
+			exponents[size++] = exponent;
+		}
+
+		return new Factorization(signum, Arrays.copyOf(primes, size), Arrays.copyOf(exponents, size));
+	}
+
+	/**
+	 * Adds the prime factors of n, which is in this table, to factors in ascending
+	 * order.
+	 */
+	void factor(final long n, final List<BigInteger> factors) {
+
+		int m = (int) n;
+
+		for (int twos = Integer.numberOfTrailingZeros(m); twos > 0; twos--)
+			factors.add(BigInteger.TWO);
+
+		m >>>= Integer.numberOfTrailingZeros(m);
+
+		while (m != 1) {
+			final int p = spf[m >>> 1];
+			factors.add(BigInteger.valueOf(p));
+			m /= p;
+		}
+	}
+}
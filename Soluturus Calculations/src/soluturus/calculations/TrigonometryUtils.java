@@ -31,6 +31,7 @@ public final class TrigonometryUtils {
 	private static Fraction factorialN = Fraction.ONE;
 	private static Fraction fourPowerN = Fraction.ONE;
 	private static final List<Fraction> asinfactors = new ArrayList<>();
+	private static FractionVector asinvector;
 
 	public static BigDecimal asin(BigDecimal number, MathContext mc) {
 
@@ -46,38 +47,35 @@ public final class TrigonometryUtils {
 			return acos(ExponentiationUtils.root(ONE.subtract(number.multiply(number)), BigInteger.TWO, mc2), mc);
 		}
 
-		BigDecimal acceptableError = BigDecimal.ONE.movePointLeft(mc2.getPrecision() + 1);
-
-		final BigDecimal xPowerTwo = number.multiply(number, mc2);
-		BigDecimal powerOfX = number;
-
-		BigDecimal sum = BigDecimal.ZERO;
-		BigDecimal step;
-		int i = 0;
-		do {
-			Fraction factor;
-
-			synchronized (asinlock) {
-				while (asinfactors.size() <= i) {
-					asinfactors.add((factorial2n.divide(fourPowerN.multiply(factorialN).multiply(factorialN)
-							.multiply(new Fraction(2 * nasin++ + 1)))));
-					factorial2n = (Fraction) factorial2n.multiply(new Fraction(4 * nasin * (nasin - .5)));
-					factorialN = (Fraction) factorialN.multiply(new Fraction(nasin));
-					fourPowerN = (fourPowerN.multiply(Fraction.FOUR));
-				}
-			}
+		BigDecimal sum = null;
+
+		for (int size = 16; sum == null; size *= 2)
+			sum = asinVector(size).evaluate(number, 1, 2, mc2);
+
+		return sum.round(mc);
+	}
 
-			factor = asinfactors.get(i);
-			step = new BigDecimal(factor.getNumerator()).multiply(powerOfX)
-					.divide(new BigDecimal(factor.getDenominator()), mc2);
-			i++;
-			powerOfX = powerOfX.multiply(xPowerTwo, mc2);
+	/**
+	 * Returns the coefficients of the series for asin, of which there are at least
+	 * size.
+	 */
+	private static FractionVector asinVector(final int size) {
 
-			sum = sum.add(step);
+		synchronized (asinlock) {
 
-		} while (step.abs().compareTo(acceptableError) > 0);
+			if (asinvector != null && asinvector.size() >= size)
+				return asinvector;
 
-		return sum.round(mc);
+			while (asinfactors.size() < size) {
+				asinfactors.add((factorial2n.divide(fourPowerN.multiply(factorialN).multiply(factorialN)
+						.multiply(new Fraction(2 * nasin++ + 1)))));
+				factorial2n = factorial2n.multiply(new Fraction(2L * nasin * (2 * nasin - 1)));
+				factorialN = factorialN.multiply(new Fraction(nasin));
+				fourPowerN = (fourPowerN.multiply(Fraction.FOUR));
+			}
+
+			return asinvector = new FractionVector(asinfactors);
+		}
 	}
 
 	public static BigDecimal atan(final BigDecimal number, final MathContext mc) {
@@ -97,6 +95,7 @@ public final class TrigonometryUtils {
 	private static int nsin = 0;
 	private static Fraction factorial2nPlus1 = Fraction.ONE;
 	private static final List<Fraction> sinfactors = new ArrayList<>();
+	private static FractionVector sinvector;
 
 	public static BigDecimal sin(BigDecimal number, final MathContext mc) {
 
@@ -111,53 +110,35 @@ public final class TrigonometryUtils {
 							IrrationalUtils.pi(new MathContext(mc2.getPrecision() + 4, mc.getRoundingMode()))),
 					new MathContext(mc2.getPrecision() + 4, mc.getRoundingMode()));
 
-		final BigDecimal xPowerTwo = number.multiply(number, mc2);
-
-		BigDecimal powerOfX = number;
-
-		BigDecimal sum = BigDecimal.ZERO;
-		BigDecimal step;
+		BigDecimal sum = null;
 
-		int i = 0;
+		for (int size = 16; sum == null; size *= 2)
+			sum = sinVector(size).evaluate(number, 1, 2, mc2);
 
-		do {
-
-			synchronized (sinlock) {
-				while (sinfactors.size() <= i) {
-
-					sinfactors.add(factorial2nPlus1);
+		return sum.round(mc);
+	}
 
-					factorial2nPlus1 = (Fraction) factorial2nPlus1.divide(new Fraction(4 * ++nsin * nsin + 2 * nsin));
-				}
-			}
+	/**
+	 * Returns the coefficients of the series for sin, of which there are at least
+	 * size.
+	 */
+	private static FractionVector sinVector(final int size) {
 
-			step = new BigDecimal(sinfactors.get(i).getNumerator()).multiply(powerOfX)
-					.divide(new BigDecimal(sinfactors.get(i).getDenominator()), mc2);
-			powerOfX = powerOfX.multiply(xPowerTwo, mc2);
+		synchronized (sinlock) {
 
-			i++;
+			if (sinvector != null && sinvector.size() >= size)
+				return sinvector;
 
-			synchronized (sinlock) {
-				while (sinfactors.size() <= i) {
+			while (sinfactors.size() < size) {
 
-					sinfactors.add(factorial2nPlus1.additiveInverse());
+				sinfactors.add((nsin & 1) == 0 ? factorial2nPlus1 : factorial2nPlus1.additiveInverse());
 
-					factorial2nPlus1 = (Fraction) factorial2nPlus1.divide(new Fraction(4 * ++nsin * nsin + 2 * nsin));
-				}
+				nsin++;
+				factorial2nPlus1 = factorial2nPlus1.divide(new Fraction(2L * nsin * (2 * nsin + 1)));
 			}
 
-			BigDecimal step2 = new BigDecimal(sinfactors.get(i).getNumerator()).multiply(powerOfX)
-					.divide(new BigDecimal(sinfactors.get(i).getDenominator()), mc2);
-			powerOfX = powerOfX.multiply(xPowerTwo, mc2);
-
-			step = step.add(step2);
-			i++;
-
-			sum = sum.add(step);
-			// System.out.println(sum + " " + step);
-		} while (step.abs().compareTo(BigDecimal.ONE.movePointLeft(mc2.getPrecision() + 1)) > 0);
-
-		return sum.round(mc);
+			return sinvector = new FractionVector(sinfactors);
+		}
 	}
 
 	public static final BigDecimal tan(final BigDecimal number, final MathContext mc) {
@@ -1,8 +1,6 @@
 package soluturus.base.expressions;
 
-import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.MathContext;
 
 import soluturus.base.exceptions.ZeroDivisionException;
 import soluturus.base.internal.InternalAddition;
@@ -12,7 +10,7 @@ import soluturus.base.internal.InternalMultiplication;
 import soluturus.base.internal.algebraic.Logarithm;
 import soluturus.base.internal.algebraic.Power;
 import soluturus.base.internal.trigonometric.Sine;
-import soluturus.calculations.ExponentiationUtils;
+import soluturus.calculations.Fraction;
 import soluturus.calculations.IntegerUtils;
 
 /**
@@ -81,16 +79,16 @@ public final record Integer(BigInteger number) implements Expression, Comparable
 	@Override
 	public Expression log(Expression base) {
 		// TODO
-		if (base instanceof Integer bint) {
-			MathContext mc = new MathContext(-ExponentiationUtils
-					.log(new BigDecimal(number), new BigDecimal(bint.number), new MathContext(1)).scale() + 3);
-			BigDecimal log = ExponentiationUtils.log(new BigDecimal(number), new BigDecimal(bint.number), mc);
+		if (base instanceof Integer bint && number.signum() > 0 && bint.number.compareTo(BigInteger.TWO) >= 0) {
 
-			if (log.toString().indexOf('.') != -1 && !(log.toString().indexOf('.') == log.toString().length() - 1
-					|| log.toString().charAt(log.toString().indexOf('.')) == '0'))
+			final Fraction log = IntegerUtils.ilog(number, bint.number);
+
+			if (log == null)
 				return new Logarithm(base, this);
+			else if (log.getDenominator().equals(BigInteger.ONE))
+				return new Integer(log.getNumerator());
 			else
-				return new Integer(log.toBigInteger());
+				return new Integer(log.getNumerator()).divide(new Integer(log.getDenominator()));
 		}
 		return new Logarithm(base, this);
 	}
@@ -135,10 +133,9 @@ public final record Integer(BigInteger number) implements Expression, Comparable
 	@Override
 	public Integer[] factor() {
 
+		// The factors of a negative number already end with -1.
 		BigInteger[] bfactors = IntegerUtils.factor(number);
-		Integer[] factors = new Integer[signum() < 0 ? bfactors.length + 1 : bfactors.length];
-		if (signum() < 0)
-			factors[bfactors.length] = negative_one;
+		Integer[] factors = new Integer[bfactors.length];
 		for (int i = 0; i < bfactors.length; i++)
 			factors[i] = new Integer(bfactors[i]);
 		return factors;
@@ -1,8 +1,6 @@
 package soluturus.base.internal;
 
-import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -14,6 +12,7 @@ import soluturus.base.internal.algebraic.Power;
 import soluturus.base.internal.algebraic.Product;
 import soluturus.base.internal.algebraic.Sum;
 import soluturus.calculations.ExponentiationUtils;
+import soluturus.calculations.Factorization;
 import soluturus.calculations.IntegerUtils;
 
 public final class InternalExponentiation {
@@ -197,20 +196,32 @@ public final class InternalExponentiation {
 
 			BigInteger ret = b.number();
 
-			for (BigInteger degree : IntegerUtils.factor(deg.number())) {
+			final Factorization degrees = IntegerUtils.factorization(deg.number());
 
-				BigDecimal radicand = new BigDecimal(ret);
+			for (int i = 0; i < degrees.size(); i++) {
 
-				MathContext mc = new MathContext(
-						-ExponentiationUtils.root(radicand, degree, new MathContext(1)).scale() + 3);
+				final BigInteger degree = degrees.getPrime(i);
+				int exponent = degrees.getExponent(i);
 
-				BigDecimal root = ExponentiationUtils.root(radicand, degree, mc);
+				// Every root of 1 is exact. Any other radicand has no exact root of a degree
+				// at least its bit length, since that root would be at least 2, and this
+				// also keeps the degree within the int that iroot takes.
+				if (ret.equals(BigInteger.ONE))
+					exponent = 0;
 
-				if (root.toString().indexOf('.') != -1 && !(root.toString().indexOf('.') == root.toString().length() - 1
-						|| root.toString().charAt(root.toString().indexOf('.')) == '0'))
-					remainingDegree = remainingDegree.multiply(degree);
-				else
-					ret = root.toBigInteger();
+				for (; exponent > 0 && degree.compareTo(BigInteger.valueOf(ret.bitLength())) < 0; exponent--) {
+
+					final BigInteger[] root = ExponentiationUtils.iroot(ret, degree.intValue());
+
+					if (root[1].signum() != 0)
+						break;
+
+					ret = root[0];
+				}
+
+				// Once the radicand is not a perfect power of this degree, no further
+				// root of it will be either.
+				remainingDegree = remainingDegree.multiply(degree.pow(exponent));
 			}
 
 			Integer base = new Integer(negative ? ret.negate() : ret);
@@ -265,9 +276,15 @@ public final class InternalExponentiation {
 			final Expression x = b.addends()[0];
 			final Expression y = b.addends()[1];
 
-			for (BigInteger k = BigInteger.ZERO; k.compareTo(n) < 1; k = k.add(BigInteger.ONE))
-				product = product.add(new Integer(IntegerUtils.nCk(n, k)).multiply(x.pow(new Integer(n.subtract(k))),
+			// Each binomial coefficient follows from the last, as nC(k+1) = nCk (n - k) /
+			// (k + 1).
+			BigInteger coefficient = BigInteger.ONE;
+
+			for (BigInteger k = BigInteger.ZERO; k.compareTo(n) < 1; k = k.add(BigInteger.ONE)) {
+				product = product.add(new Integer(coefficient).multiply(x.pow(new Integer(n.subtract(k))),
 						y.pow(new Integer(k))));
+				coefficient = coefficient.multiply(n.subtract(k)).divide(k.add(BigInteger.ONE));
+			}
 
 			return product;
 		} else {